@@ -0,0 +1,72 @@
+package org.galatea.starter.benchmark;
+
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.utils.http.converter.CsvSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares writing missions as CSV the way SettlementMissionCsvConverter used to (a new mapper and
+ * schema per call, the whole document built as a String and then copied into a byte array) with
+ * streaming them through CsvSerializer's cached writer. The score is milliseconds per document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CsvSerializerBenchmark {
+
+  @Param({"1000", "100000", "1000000"})
+  public int rows;
+
+  private List<SettlementMission> missions;
+
+  private final OutputStream out = OutputStream.nullOutputStream();
+
+  /**
+   * Build the missions to serialize.
+   */
+  @Setup(Level.Trial)
+  public void createMissions() {
+    missions = new ArrayList<>(rows);
+    for (long i = 0; i < rows; i++) {
+      missions.add(SettlementMission.builder().id(i).instrument("IBM").externalParty("EXT-1")
+          .depot("DTC").direction("REC").qty(100d).version(0L).build());
+    }
+  }
+
+  @Benchmark
+  public void perCallMapperToBytes() throws IOException {
+    CsvMapper mapper = new CsvMapper();
+    mapper.disable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY);
+    CsvSchema schema = mapper.schemaFor(SettlementMission.class).withHeader();
+    out.write(mapper.writer(schema).writeValueAsString(missions)
+        .getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Benchmark
+  public void cachedWriterToStream() throws IOException {
+    CsvSerializer.serializeToCsv(missions, SettlementMission.class, out);
+  }
+}
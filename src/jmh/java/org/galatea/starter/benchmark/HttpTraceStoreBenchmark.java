@@ -0,0 +1,95 @@
+package org.galatea.starter.benchmark;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.galatea.starter.utils.HttpTraceQuery;
+import org.galatea.starter.utils.HttpTraceRingBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.actuate.trace.http.HttpTrace;
+import org.springframework.boot.actuate.trace.http.HttpTrace.Request;
+import org.springframework.boot.actuate.trace.http.HttpTrace.Response;
+import org.springframework.boot.actuate.trace.http.InMemoryHttpTraceRepository;
+
+/**
+ * Measures how HTTP trace stores hold up with 64 threads adding traces at once, alongside one
+ * thread reading them back: "inMemory" is spring's InMemoryHttpTraceRepository, which every thread
+ * synchronizes on, and "ringBuffer" is the lock-free HttpTraceRingBuffer. The score is operations
+ * per microsecond for each group of threads.
+ *
+ * <p>The reader looks for the slowest traces in the ring buffer; the in-memory repository can only
+ * return all of its traces, so it does that instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class HttpTraceStoreBenchmark {
+
+  private static final HttpTraceQuery ALL = HttpTraceQuery.builder().build();
+
+  @Param({"inMemory", "ringBuffer"})
+  public String store;
+
+  @Param({"1000"})
+  public int capacity;
+
+  private InMemoryHttpTraceRepository inMemory;
+
+  private HttpTraceRingBuffer ringBuffer;
+
+  private HttpTrace trace;
+
+  /**
+   * Create an empty store of the kind under test.
+   */
+  @Setup(Level.Trial)
+  public void createStore() {
+    inMemory = new InMemoryHttpTraceRepository();
+    inMemory.setCapacity(capacity);
+    ringBuffer = new HttpTraceRingBuffer(capacity);
+
+    Request request = new Request("GET", URI.create("http://localhost/settlementEngine/mission/1"),
+        Collections.emptyMap(), null);
+    trace = new HttpTrace(request, new Response(200, Collections.emptyMap()), Instant.now(), null,
+        null, 5L);
+  }
+
+  @Benchmark
+  @Group("contended")
+  @GroupThreads(64)
+  public void add() {
+    if ("ringBuffer".equals(store)) {
+      ringBuffer.add(trace);
+    } else {
+      inMemory.add(trace);
+    }
+  }
+
+  @Benchmark
+  @Group("contended")
+  @GroupThreads(1)
+  public List<HttpTrace> read() {
+    if ("ringBuffer".equals(store)) {
+      return ringBuffer.findSlowest(ALL, 10);
+    }
+    return inMemory.findAll();
+  }
+}
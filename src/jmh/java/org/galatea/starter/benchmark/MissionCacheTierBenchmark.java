@@ -0,0 +1,113 @@
+package org.galatea.starter.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.Configuration;
+import net.sf.ehcache.config.PersistenceConfiguration;
+import net.sf.ehcache.config.PersistenceConfiguration.Strategy;
+import net.sf.ehcache.store.MemoryStoreEvictionPolicy;
+import org.galatea.starter.domain.SettlementMission;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the missions cache as it used to be configured (16,384 entries on heap) with the tiered
+ * configuration in ehcache.xml (a byte-sized heap tier backed by a serialized disk tier).
+ *
+ * <p>Each operation reads a mission, with reads skewed towards a hot set as they are in practice,
+ * and caches it on a miss as findById would. The score is reads per second; the hits and misses
+ * counters give the hit ratio. Add -prof gc to the JMH arguments to compare garbage collection
+ * counts and time under each configuration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class MissionCacheTierBenchmark {
+
+  @Param({"entries", "tiered"})
+  public String config;
+
+  @Param({"100000", "1000000"})
+  public int missions;
+
+  private CacheManager cacheManager;
+
+  private Cache cache;
+
+  /**
+   * Create the missions cache under test.
+   */
+  @Setup(Level.Trial)
+  public void createCache() {
+    if ("tiered".equals(config)) {
+      cacheManager = CacheManager.newInstance(getClass().getResource("/ehcache.xml"));
+    } else {
+      cacheManager = CacheManager.newInstance(new Configuration().name("entries")
+          .cache(new CacheConfiguration("missions", 16384).timeToLiveSeconds(1200)
+              .memoryStoreEvictionPolicy(MemoryStoreEvictionPolicy.LRU)
+              .persistence(new PersistenceConfiguration().strategy(Strategy.NONE))));
+    }
+    cache = cacheManager.getCache("missions");
+  }
+
+  @TearDown(Level.Trial)
+  public void shutdownCache() {
+    cacheManager.shutdown();
+  }
+
+  /**
+   * Cache hits and misses, reported alongside the score.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class HitCounters {
+
+    public long hits;
+
+    public long misses;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      hits = 0;
+      misses = 0;
+    }
+  }
+
+  @Benchmark
+  public SettlementMission read(final HitCounters counters) {
+    // Raising a uniform value to the 4th power favours low ids: about half of all reads fall on
+    // the lowest 6% of missions
+    long id = 1 + (long) (missions * Math.pow(ThreadLocalRandom.current().nextDouble(), 4));
+
+    Element cached = cache.get(id);
+    if (cached != null) {
+      counters.hits++;
+      return (SettlementMission) cached.getObjectValue();
+    }
+
+    counters.misses++;
+    SettlementMission loaded = SettlementMission.builder().id(id).instrument("IBM")
+        .externalParty("EXT-1").depot("DTC").direction("REC").qty(100d).version(0L).build();
+    cache.put(new Element(id, loaded));
+    return loaded;
+  }
+}
@@ -0,0 +1,77 @@
+package org.galatea.starter.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.galatea.starter.Application;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
+import org.galatea.starter.utils.jpa.BlockSequenceGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Measures how many missions per second ISettlementMissionRpsy.saveAll can insert with each of the
+ * id allocation strategies supported by BlockSequenceGenerator. The score is rows per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class MissionIdAllocationBenchmark {
+
+  private static final int ROWS_PER_SAVE = 1000;
+
+  @Param({"none", "hilo", "pooled", "pooled-lo"})
+  public String optimizer;
+
+  private ConfigurableApplicationContext context;
+
+  private ISettlementMissionRpsy missionRpsy;
+
+  /**
+   * Start the application against its own in-memory database, using the optimizer under test.
+   */
+  @Setup(Level.Trial)
+  public void startApplication() {
+    context = new SpringApplicationBuilder(Application.class)
+        .properties(
+            "spring.jpa.properties." + BlockSequenceGenerator.OPTIMIZER_SETTING + "=" + optimizer,
+            "spring.datasource.url=jdbc:h2:mem:idbenchmark-" + optimizer,
+            "wiremock.server.port=0")
+        .run("--server.port=0");
+    missionRpsy = context.getBean(ISettlementMissionRpsy.class);
+  }
+
+  @TearDown(Level.Trial)
+  public void stopApplication() {
+    context.close();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS_PER_SAVE)
+  public Iterable<SettlementMission> saveAll() {
+    List<SettlementMission> missions = new ArrayList<>(ROWS_PER_SAVE);
+    for (int i = 0; i < ROWS_PER_SAVE; i++) {
+      missions.add(SettlementMission.builder().instrument("IBM").externalParty("EXT-1")
+          .depot("DTC").direction("REC").qty(100d).version(0L).build());
+    }
+    return missionRpsy.saveAll(missions);
+  }
+}
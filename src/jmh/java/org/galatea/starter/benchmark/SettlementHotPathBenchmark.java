@@ -0,0 +1,210 @@
+package org.galatea.starter.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import org.galatea.starter.AppConfig;
+import org.galatea.starter.MessageTranslationConfig;
+import org.galatea.starter.ProtoMessageTranslationConfig;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessages;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionMessage;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionMessages;
+import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
+import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessages;
+import org.galatea.starter.service.IAgreementTransformer;
+import org.galatea.starter.utils.http.converter.CsvSerializer;
+import org.galatea.starter.utils.http.converter.XlsxSerializer;
+import org.galatea.starter.utils.translation.ITranslator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Measures the CPU-bound part of settling a request, with no database or web server: decode the
+ * request body, translate it to TradeAgreements, validate them, transform them to
+ * SettlementMissions and serialize the missions back out. The score is microseconds per request;
+ * run with the gc profiler (the benchmark profile's default) to see the allocation per request as
+ * gc.alloc.rate.norm.
+ *
+ * <p>format is the response format. Requests are decoded from the same format, except that csv
+ * and xlsx responses are produced from a JSON request, as the API only accepts JSON, XML and
+ * protobuf bodies. Each step uses the same beans and settings as the application.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SettlementHotPathBenchmark {
+
+  @Param({"json", "xml", "protobuf", "csv", "xlsx"})
+  public String format;
+
+  @Param({"1", "10000"})
+  public int agreements;
+
+  private byte[] request;
+
+  private ObjectMapper objectMapper;
+
+  private JAXBContext jaxbContext;
+
+  private Validator validator;
+
+  private IAgreementTransformer agreementTransformer;
+
+  private ITranslator<TradeAgreementMessages, List<TradeAgreement>> agreementTranslator;
+
+  private ITranslator<TradeAgreementProtoMessages, List<TradeAgreement>> agreementProtoTranslator;
+
+  private ITranslator<SettlementMission, SettlementMissionMessage> missionTranslator;
+
+  private ITranslator<SettlementMission, SettlementMissionProtoMessage> missionProtoTranslator;
+
+  /**
+   * Build the translators the application uses, and encode the request in the format under test.
+   */
+  @Setup(Level.Trial)
+  public void createRequest() throws IOException, JAXBException {
+    // The same mapper as MvcConfig's MappingJackson2HttpMessageConverter
+    objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    jaxbContext = JAXBContext.newInstance(TradeAgreementMessages.class,
+        SettlementMissionMessages.class);
+    validator = Validation.buildDefaultValidatorFactory().getValidator();
+    agreementTransformer = new AppConfig().agreementTransformer();
+
+    MessageTranslationConfig translationConfig = new MessageTranslationConfig();
+    agreementTranslator = translationConfig.tradeAgreementMessagesTranslator(
+        translationConfig.tradeAgreementMessageTranslator());
+    missionTranslator = translationConfig.settlementMissionTranslator();
+    ProtoMessageTranslationConfig protoConfig = new ProtoMessageTranslationConfig();
+    agreementProtoTranslator = protoConfig.tradeAgreementProtoMessagesTranslator(
+        protoConfig.tradeAgreementProtoTranslator());
+    missionProtoTranslator = protoConfig.settlementMissionProtoTranslator();
+
+    TradeAgreementMessages.TradeAgreementMessagesBuilder messages =
+        TradeAgreementMessages.builder();
+    TradeAgreementProtoMessages.Builder protoMessages = TradeAgreementProtoMessages.newBuilder();
+    for (int i = 0; i < agreements; i++) {
+      String buySell = i % 2 == 0 ? "B" : "S";
+      messages.agreement(TradeAgreementMessage.builder().instrument("IBM").internalParty("INT-1")
+          .externalParty("EXT-" + i).buySell(buySell).qty(100d + i).build());
+      protoMessages.addMessage(TradeAgreementProtoMessage.newBuilder().setInstrument("IBM")
+          .setInternalParty("INT-1").setExternalParty("EXT-" + i).setBuySell(buySell)
+          .setQty(100d + i));
+    }
+
+    switch (format) {
+      case "xml":
+        ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        jaxbContext.createMarshaller().marshal(messages.build(), xml);
+        request = xml.toByteArray();
+        break;
+      case "protobuf":
+        request = protoMessages.build().toByteArray();
+        break;
+      default:
+        request = objectMapper.writeValueAsBytes(messages.build());
+    }
+  }
+
+  @Benchmark
+  public void settle() throws IOException, JAXBException {
+    List<SettlementMission> missions = transform(validate(decode()));
+    // Jackson closes the stream it writes to, so each request gets its own
+    encode(missions, OutputStream.nullOutputStream());
+  }
+
+  private List<TradeAgreement> decode() throws IOException, JAXBException {
+    switch (format) {
+      case "xml":
+        return agreementTranslator.translate((TradeAgreementMessages) jaxbContext
+            .createUnmarshaller().unmarshal(new ByteArrayInputStream(request)));
+      case "protobuf":
+        return agreementProtoTranslator.translate(TradeAgreementProtoMessages.parseFrom(request));
+      default:
+        return agreementTranslator.translate(
+            objectMapper.readValue(request, TradeAgreementMessages.class));
+    }
+  }
+
+  private List<TradeAgreement> validate(final List<TradeAgreement> agreements) {
+    for (TradeAgreement agreement : agreements) {
+      Set<ConstraintViolation<TradeAgreement>> violations = validator.validate(agreement);
+      if (!violations.isEmpty()) {
+        throw new ConstraintViolationException(violations);
+      }
+    }
+    return agreements;
+  }
+
+  private List<SettlementMission> transform(final List<TradeAgreement> agreements) {
+    List<SettlementMission> missions = new ArrayList<>(agreements.size());
+    long id = 0;
+    for (TradeAgreement agreement : agreements) {
+      SettlementMission mission = agreementTransformer.transform(agreement);
+      // Stands in for the id the database would assign
+      mission.setId(id++);
+      missions.add(mission);
+    }
+    return missions;
+  }
+
+  private void encode(final List<SettlementMission> missions, final OutputStream out)
+      throws IOException, JAXBException {
+    switch (format) {
+      case "xml":
+        jaxbContext.createMarshaller().marshal(toMessages(missions), out);
+        break;
+      case "protobuf":
+        SettlementMissionProtoMessages.Builder protoMessages =
+            SettlementMissionProtoMessages.newBuilder();
+        missions.forEach(mission -> protoMessages.addMessage(
+            missionProtoTranslator.translate(mission)));
+        protoMessages.build().writeTo(out);
+        break;
+      case "csv":
+        CsvSerializer.serializeToCsv(missions, SettlementMission.class, out);
+        break;
+      case "xlsx":
+        XlsxSerializer.serializeToXlsx(missions, SettlementMission.class, out);
+        break;
+      default:
+        objectMapper.writeValue(out, toMessages(missions));
+    }
+  }
+
+  private SettlementMissionMessages toMessages(final List<SettlementMission> missions) {
+    return SettlementMissionMessages.builder().missions(missions.stream()
+        .map(missionTranslator::translate).collect(Collectors.toList())).build();
+  }
+}
@@ -0,0 +1,84 @@
+package org.galatea.starter.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.galatea.starter.Application;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.service.SettlementService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Measures how long SettlementService.spawnMissions takes to settle a request of the given size,
+ * with its agreements transformed on the request thread ("serial") or in parallel chunks on the
+ * settlement fork-join pool ("parallel"). The score is the average time per request; the request
+ * size at which parallel overtakes serial is where settlement.parallel.threshold should be set.
+ *
+ * <p>Requests go through the service's validation and are saved to an in-memory database, as they
+ * would be in production, so the numbers include the work that parallel mode can't speed up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SettlementParallelismBenchmark {
+
+  @Param({"serial", "parallel"})
+  public String mode;
+
+  @Param({"100", "1000", "5000", "20000"})
+  public int agreements;
+
+  private ConfigurableApplicationContext context;
+
+  private SettlementService settlementService;
+
+  private List<TradeAgreement> request;
+
+  /**
+   * Start the application against its own in-memory database, in the mode under test.
+   */
+  @Setup(Level.Trial)
+  public void startApplication() {
+    context = new SpringApplicationBuilder(Application.class)
+        .properties(
+            "settlement.parallel.threshold=" + ("parallel".equals(mode) ? 1 : 0),
+            "spring.datasource.url=jdbc:h2:mem:parallelbenchmark-" + mode + "-" + agreements,
+            "wiremock.server.port=0")
+        .run("--server.port=0");
+    settlementService = context.getBean(SettlementService.class);
+
+    request = new ArrayList<>(agreements);
+    for (int i = 0; i < agreements; i++) {
+      request.add(TradeAgreement.builder().instrument("IBM").internalParty("INT-1")
+          .externalParty("EXT-" + i).buySell(i % 2 == 0 ? "B" : "S").qty(100d + i).build());
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void stopApplication() {
+    context.close();
+  }
+
+  @Benchmark
+  public Set<Long> spawnMissions() {
+    return settlementService.spawnMissions(request);
+  }
+}
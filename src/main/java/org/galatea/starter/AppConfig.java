@@ -1,28 +1,40 @@
 package org.galatea.starter;
 
 import feign.Logger;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.ForkJoinPool;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.aspect4log.aspect.LogAspect;
 import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.service.IAgreementTransformer;
+import org.galatea.starter.utils.cache.MeteredEhCacheCacheManager;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.ehcache.EhCacheCacheManager;
 import org.springframework.cache.ehcache.EhCacheManagerFactoryBean;
 import org.springframework.cloud.openfeign.EnableFeignClients;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 @Slf4j
 @Configuration
 @EnableAspectJAutoProxy
 @EnableCaching
+@EnableAsync
 @EnableFeignClients
+@EnableScheduling
 public class AppConfig {
 
+  /** JVM setting for how many idle HTTP connections are kept alive per host. */
+  private static final String HTTP_MAX_CONNECTIONS = "http.maxConnections";
+
   /**
    * Create a LogAspect for use with the SpringAOP @Log annotation.
    */
@@ -46,10 +58,18 @@ public class AppConfig {
   /**
    * CacheManager that contains the Cache Configuration. Spring will use this cache if any
    * cache annotations are used.
+   *
+   * <p>Spring Boot reports each cache's hits, misses, puts, evictions and size to the meter
+   * registry, tagged by cache name, and the caches created here add the time taken by their loads.
+   * All of these can be read from the actuator metrics endpoint (e.g.
+   * /actuator/metrics/cache.gets).
    */
   @Bean
-  public CacheManager cacheManager(final EhCacheManagerFactoryBean ehCacheCacheManagerFactoryBean) {
-    return new EhCacheCacheManager(ehCacheCacheManagerFactoryBean.getObject());
+  public CacheManager cacheManager(final EhCacheManagerFactoryBean ehCacheCacheManagerFactoryBean,
+      final ObjectProvider<MeterRegistry> meterRegistry) {
+    // Contexts without metrics auto-configuration (e.g. some tests) get a registry of their own
+    return new MeteredEhCacheCacheManager(ehCacheCacheManagerFactoryBean.getObject(),
+        meterRegistry.getIfAvailable(SimpleMeterRegistry::new), "cacheManager");
   }
 
   /**
@@ -66,6 +86,64 @@ public class AppConfig {
     return cmfb;
   }
 
+  /**
+   * Executor that runs calls to IEX in parallel, e.g. the chunks of a large last traded price
+   * request. Bounded so that a burst of requests can't open an unbounded number of connections.
+   *
+   * <p>The IEX endpoints used to make their calls on the servlet thread, so by default this is
+   * sized like the servlet container's thread pool and allows as many IEX calls at once as before.
+   * The Feign client connects with HttpURLConnection, which only keeps http.maxConnections idle
+   * connections per host alive (5 unless set), so that's raised to match; otherwise most calls
+   * would open a new connection to IEX.
+   */
+  @Bean
+  public ThreadPoolTaskExecutor iexTaskExecutor(
+      @Value("${iex.max-concurrency:200}") final int maxConcurrency,
+      @Value("${iex.queue-capacity:1000}") final int queueCapacity) {
+    if (System.getProperty(HTTP_MAX_CONNECTIONS) == null) {
+      System.setProperty(HTTP_MAX_CONNECTIONS, String.valueOf(maxConcurrency));
+    }
+    log.info("Up to {} concurrent calls to IEX, keeping up to {} connections alive",
+        maxConcurrency, System.getProperty(HTTP_MAX_CONNECTIONS));
+
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(maxConcurrency);
+    executor.setMaxPoolSize(maxConcurrency);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setThreadNamePrefix("iex-");
+    return executor;
+  }
+
+  /**
+   * Executor that asynchronous settlement jobs run on. Its queue is bounded so that once it's full,
+   * new jobs are turned away (with a TaskRejectedException) rather than piling up.
+   */
+  @Bean
+  public ThreadPoolTaskExecutor settlementJobExecutor(
+      @Value("${settlement.jobs.workers:4}") final int workers,
+      @Value("${settlement.jobs.queue-capacity:100}") final int queueCapacity) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(workers);
+    executor.setMaxPoolSize(workers);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setThreadNamePrefix("settlement-job-");
+    // Let jobs that have been accepted finish when the application shuts down
+    executor.setWaitForTasksToCompleteOnShutdown(true);
+    executor.setAwaitTerminationSeconds(60);
+    return executor;
+  }
+
+  /**
+   * Fork-join pool that transforms the agreements of large settlement requests in parallel. Kept
+   * apart from the common pool so that large requests can't hold up other users of that pool.
+   */
+  @Bean(destroyMethod = "shutdown")
+  public ForkJoinPool settlementForkJoinPool(
+      @Value("${settlement.parallel.parallelism:0}") final int parallelism) {
+    return new ForkJoinPool(
+        parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+  }
+
   /**
    * Set the Feign log level for interfaces annotated with @FeignClient.
    *
@@ -1,10 +1,19 @@
 package org.galatea.starter;
 
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import java.util.function.BiConsumer;
+import java.util.function.DoubleSupplier;
 import javax.jms.ConnectionFactory;
 import javax.jms.Message;
+import javax.sql.DataSource;
 import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.utils.jms.AdaptiveConcurrencyPolicy;
 import org.galatea.starter.utils.jms.FuseJmsListenerContainerFactory;
+import org.galatea.starter.utils.jms.ProcessingLatency;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.jms.DefaultJmsListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -45,15 +54,25 @@ public class JmsConfig implements JmsListenerConfigurer {
    * listener container which adds tracing of how the message is handled. We also manually set the
    * message converter to ensure that it is using the correct message format.
    *
+   * <p>If jms.adaptive-concurrency.enabled is set, each container's maximum consumers moves
+   * between the lower bound of its concurrency and jms.adaptive-concurrency.max-consumers,
+   * following the queue depth, processing time per agreement and database connection pool usage.
+   *
    * @param queueConnectionFactory injected by spring
    * @param configurer injected by spring
+   * @param dataSource the data source whose connection pool usage limits the consumers
+   * @param settlementLatency the time taken to settle each agreement
+   * @param concurrencyPolicy the adaptive concurrency policy, or null if it's disabled
    * @return the factory.
    */
   @Bean
   public JmsListenerContainerFactory<DefaultMessageListenerContainer> jmsListenerContainerFactory(
       final ConnectionFactory queueConnectionFactory,
       final DefaultJmsListenerContainerFactoryConfigurer configurer,
-      final BiConsumer<Message, Exception> failedMessageConsumer) {
+      final BiConsumer<Message, Exception> failedMessageConsumer,
+      final ObjectProvider<DataSource> dataSource,
+      final ProcessingLatency settlementLatency,
+      final ObjectProvider<AdaptiveConcurrencyPolicy> concurrencyPolicy) {
 
     FuseJmsListenerContainerFactory listenerFactory =
         new FuseJmsListenerContainerFactory(failedMessageConsumer);
@@ -65,10 +84,67 @@ public class JmsConfig implements JmsListenerConfigurer {
     // jms/listener/DefaultMessageListenerContainer.html
     configurer.configure(listenerFactory, queueConnectionFactory);
 
-    // TODO: override any defaults in the listener factory before we return the object
+    listenerFactory.setConcurrencyPolicy(concurrencyPolicy.getIfAvailable());
+    listenerFactory.setProcessingLatency(settlementLatency);
+    DataSource pooledDataSource = dataSource.getIfAvailable();
+    if (pooledDataSource != null) {
+      listenerFactory.setPoolSaturation(poolSaturation(pooledDataSource));
+    }
     return listenerFactory;
   }
 
+  /**
+   * Returns the moving average of the time SettlementBatcher takes to settle each agreement, which
+   * the adaptive concurrency policy backs off on.
+   */
+  @Bean
+  public ProcessingLatency settlementLatency() {
+    return new ProcessingLatency();
+  }
+
+  /**
+   * Returns the policy used to adapt the number of JMS consumers, if it's enabled.
+   */
+  @Bean
+  @ConditionalOnProperty(name = "jms.adaptive-concurrency.enabled", havingValue = "true")
+  public AdaptiveConcurrencyPolicy jmsConcurrencyPolicy(
+      @Value("${jms.adaptive-concurrency.max-consumers:20}") final int maxConsumers,
+      @Value("${jms.adaptive-concurrency.backlog-per-consumer:50}") final int backlogPerConsumer,
+      @Value("${jms.adaptive-concurrency.latency-limit-millis:50}") final long latencyLimitMillis,
+      @Value("${jms.adaptive-concurrency.pool-saturation-limit:0.9}")
+      final double poolSaturationLimit,
+      @Value("${jms.adaptive-concurrency.interval-millis:5000}") final long intervalMillis,
+      @Value("${jms.adaptive-concurrency.depth-probe-limit:1000}") final int depthProbeLimit) {
+    return AdaptiveConcurrencyPolicy.builder().maxConsumers(maxConsumers)
+        .backlogPerConsumer(backlogPerConsumer).latencyLimitMillis(latencyLimitMillis)
+        .poolSaturationLimit(poolSaturationLimit).intervalMillis(intervalMillis)
+        .depthProbeLimit(depthProbeLimit).build();
+  }
+
+  /**
+   * How much of the data source's connection pool is in use, from 0 to 1. A pool with threads
+   * waiting for a connection counts as full. Only Hikari pools are measured; any other data source
+   * always reports 0.
+   */
+  static DoubleSupplier poolSaturation(final DataSource dataSource) {
+    if (!(dataSource instanceof HikariDataSource)) {
+      return () -> 0;
+    }
+
+    HikariDataSource hikari = (HikariDataSource) dataSource;
+    return () -> {
+      // The pool is only created when the first connection is taken
+      HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+      if (pool == null) {
+        return 0;
+      }
+      if (pool.getThreadsAwaitingConnection() > 0) {
+        return 1;
+      }
+      return (double) pool.getActiveConnections() / hikari.getMaximumPoolSize();
+    };
+  }
+
   /**
    * For JSON messages we want to use the spring messaging converter instead of the spring jms
    * converter. The spring jms converter expects the type of object to deserialize the json to being
@@ -2,26 +2,43 @@ package org.galatea.starter;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.Sets;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.util.List;
+import java.util.Map;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.utils.FuseHttpTraceRepository;
 import org.galatea.starter.utils.http.converter.SettlementMissionCsvConverter;
 import org.galatea.starter.utils.http.converter.SettlementMissionXlsxConverter;
+import org.galatea.starter.utils.rest.EndpointLatencyInterceptor;
 import org.galatea.starter.utils.rest.FuseHttpTraceFilter;
+import org.galatea.starter.utils.rest.TraceSamplingPolicy;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.actuate.trace.http.HttpExchangeTracer;
 import org.springframework.boot.actuate.trace.http.Include;
 import org.springframework.boot.actuate.web.trace.servlet.HttpTraceFilter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.http.converter.protobuf.ProtobufHttpMessageConverter;
 import org.springframework.http.converter.xml.Jaxb2RootElementHttpMessageConverter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.ContentNegotiationConfigurer;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+@RequiredArgsConstructor
 @Slf4j
 @Configuration
 @EnableWebMvc
@@ -33,6 +50,33 @@ public class MvcConfig implements WebMvcConfigurer {
   public static final MediaType APPLICATION_EXCEL = new MediaType("application", "vnd.ms-excel");
   public static final String APPLICATION_EXCEL_VALUE = "application/vnd.ms-excel";
 
+  @NonNull
+  private final ObjectProvider<MeterRegistry> meterRegistry;
+
+  @Value("${mvc.async-timeout-millis:600000}")
+  private long asyncTimeoutMillis;
+
+  @Value("${mvc.max-size-trace-payload:50000}")
+  private int maxSizeTracePayload;
+
+  @Value("${mvc.trace.sampling.rate:1.0}")
+  private double traceSamplingRate;
+
+  @Value("${mvc.trace.sampling.path-rates:}")
+  private String traceSamplingPathRates;
+
+  @Value("${mvc.trace.sampling.errors-only:false}")
+  private boolean traceErrorsOnly;
+
+  @Value("${mvc.trace.queue-capacity:1000}")
+  private int traceQueueCapacity;
+
+  @Value("${mvc.trace.capacity:1000}")
+  private int traceCapacity;
+
+  @Value("${mvc.endpoint-latency.percentile-histogram:false}")
+  private boolean endpointLatencyHistogram;
+
   /**
    * This is used to trace web requests and store that trace info.
    *
@@ -41,15 +85,30 @@ public class MvcConfig implements WebMvcConfigurer {
   @Bean
   public HttpTraceFilter httpTraceFilter() {
     return new FuseHttpTraceFilter(fuseHttpTraceRepository(), httpExchangeTracer(),
-        path -> path.startsWith("/trace"));
+        path -> path.startsWith("/trace"), maxSizeTracePayload);
   }
 
   /**
-   * Repository for storing trace info.
+   * Repository for storing trace info. Only a sample of requests is kept (see mvc.trace.sampling).
    */
-  @Bean
+  @Bean(destroyMethod = "shutdown")
   public FuseHttpTraceRepository fuseHttpTraceRepository() {
-    return new FuseHttpTraceRepository(new ObjectMapper());
+    TraceSamplingPolicy samplingPolicy = new TraceSamplingPolicy(traceSamplingRate,
+        TraceSamplingPolicy.parsePathRates(traceSamplingPathRates), traceErrorsOnly);
+    return new FuseHttpTraceRepository(new ObjectMapper(), samplingPolicy, traceQueueCapacity,
+        traceCapacity);
+  }
+
+  /**
+   * Reports the number of traces dropped because they couldn't be recorded quickly enough, as
+   * http.trace.dropped.
+   */
+  @Bean
+  public MeterBinder httpTraceMetrics() {
+    return registry -> FunctionCounter.builder("http.trace.dropped", fuseHttpTraceRepository(),
+        FuseHttpTraceRepository::getDroppedTraceCount)
+        .description("HTTP traces dropped because the trace recorder's queue was full")
+        .register(registry);
   }
 
   /**
@@ -63,6 +122,56 @@ public class MvcConfig implements WebMvcConfigurer {
     return new HttpExchangeTracer(Sets.newHashSet(Include.values()));
   }
 
+  /**
+   * Executor that runs asynchronous request handling, such as writing a StreamingResponseBody.
+   * Without this spring falls back to a SimpleAsyncTaskExecutor, which starts a new thread for
+   * every request.
+   *
+   * <p>Tasks run with the logging context of the request that started them, so that their log
+   * lines, and the audit headers added when they start writing the response, carry the request's
+   * ids.
+   */
+  @Bean
+  public ThreadPoolTaskExecutor mvcAsyncTaskExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(8);
+    executor.setMaxPoolSize(32);
+    executor.setQueueCapacity(100);
+    executor.setThreadNamePrefix("mvc-async-");
+    executor.setTaskDecorator(task -> {
+      Map<String, String> context = MDC.getCopyOfContextMap();
+      return () -> {
+        if (context != null) {
+          MDC.setContextMap(context);
+        }
+        try {
+          task.run();
+        } finally {
+          MDC.clear();
+        }
+      };
+    });
+    return executor;
+  }
+
+  @Override
+  public void configureAsyncSupport(final AsyncSupportConfigurer configurer) {
+    configurer.setTaskExecutor(mvcAsyncTaskExecutor());
+    // Large exports are streamed for as long as they take, so the servlet container's default
+    // timeout would cut them short
+    configurer.setDefaultTimeout(asyncTimeoutMillis);
+  }
+
+  /**
+   * Times every controller method, see EndpointLatencyInterceptor.
+   */
+  @Override
+  public void addInterceptors(final InterceptorRegistry registry) {
+    // Contexts without metrics auto-configuration (e.g. some tests) get a registry of their own
+    registry.addInterceptor(new EndpointLatencyInterceptor(
+        meterRegistry.getIfAvailable(SimpleMeterRegistry::new), endpointLatencyHistogram));
+  }
+
   @Override
   public void configureContentNegotiation(final ContentNegotiationConfigurer configurer) {
     configurer.favorParameter(true) // give precedence to url request parameters
@@ -86,6 +195,8 @@ public class MvcConfig implements WebMvcConfigurer {
     // The Protobuf converter MUST be added first, otherwise Jackson will try and handle our
     // protobuf to JSON conversion (and will of course, fail).
     converters.add(new ProtobufHttpMessageConverter()); // Protobuf, XML & JSON supported
+    // Raw bytes, for responses that are serialized ahead of time (e.g. the IEX symbol list)
+    converters.add(new ByteArrayHttpMessageConverter());
     converters.add(new MappingJackson2HttpMessageConverter()); // JSON
     converters.add(new Jaxb2RootElementHttpMessageConverter()); // XML
     converters.add(new SettlementMissionCsvConverter());
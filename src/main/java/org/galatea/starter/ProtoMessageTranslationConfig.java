@@ -1,6 +1,12 @@
 package org.galatea.starter;
 
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 import org.galatea.starter.domain.SettlementMission;
@@ -19,10 +25,10 @@ public class ProtoMessageTranslationConfig {
   /**
    * Implements a translator to convert binary protobuf messages to TradeAgreements
    *
-   * <p>This translator is used for the protobuf JMS listener. The SimpleMessageConverter we use in
-   * that listener gives back a byte[] containing a serialized TradeAgreementProtoMessage, so we
-   * need to perform two steps to get to the TradeAgreement we want: convert the byte array back to
-   * a TradeAgreementProtoMessage and then translate it to the internal domain type.
+   * <p>A byte[] containing a serialized TradeAgreementProtoMessage needs two steps to get to the
+   * TradeAgreement we want: convert the byte array back to a TradeAgreementProtoMessage and then
+   * translate it to the internal domain type. The protobuf JMS listener reads its messages with
+   * tradeAgreementProtobufStreamTranslator instead, which avoids the byte array.
    */
   @Bean
   public ITranslator<byte[], TradeAgreement> tradeAgreementBinaryProtobufTranslator(
@@ -41,6 +47,44 @@ public class ProtoMessageTranslationConfig {
     };
   }
 
+  /**
+   * Implements a translator to convert a stream holding either a single TradeAgreementProtoMessage
+   * or a TradeAgreementProtoMessages batch to TradeAgreements.
+   *
+   * <p>This translator is used for the protobuf JMS listener, and parses straight from the body of
+   * the message so that a batch of hundreds of agreements isn't first copied into a byte array. The
+   * two payloads are told apart by their first field: a batch starts with its repeated message
+   * field (field 1), which a single agreement doesn't have. An empty payload holds no agreements.
+   */
+  @Bean
+  public ITranslator<InputStream, List<TradeAgreement>> tradeAgreementProtobufStreamTranslator(
+      final ITranslator<TradeAgreementProtoMessage, TradeAgreement>
+          tradeAgreementProtoMessageTranslator,
+      final ITranslator<TradeAgreementProtoMessages, List<TradeAgreement>>
+          tradeAgreementProtoMessagesTranslator) {
+    return in -> {
+      try {
+        PushbackInputStream body = new PushbackInputStream(in);
+        int firstByte = body.read();
+        if (firstByte == -1) {
+          return Collections.emptyList();
+        }
+        body.unread(firstByte);
+
+        CodedInputStream input = CodedInputStream.newInstance(body);
+        if (WireFormat.getTagFieldNumber(firstByte)
+            == TradeAgreementProtoMessages.MESSAGE_FIELD_NUMBER) {
+          return tradeAgreementProtoMessagesTranslator.translate(
+              TradeAgreementProtoMessages.parseFrom(input));
+        }
+        return Collections.singletonList(tradeAgreementProtoMessageTranslator.translate(
+            TradeAgreementProtoMessage.parseFrom(input)));
+      } catch (IOException e) {
+        throw new TranslationException("Could not translate the message to trade agreements.", e);
+      }
+    };
+  }
+
   /**
    * Implements a translator to convert TradeAgreement protobuf messages to TradeAgreement domain
    * objects.
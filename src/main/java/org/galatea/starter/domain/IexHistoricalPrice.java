@@ -1,20 +1,85 @@
 package org.galatea.starter.domain;
 
-import lombok.Builder;
-import lombok.Data;
-
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.io.Serializable;
 import java.math.BigDecimal;
 import java.time.Instant;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Transient;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
 
+/**
+ * A daily price bar from IEX. Bars never change once the day is over, so they are kept in the local
+ * database (see IexHistoricalPriceStore) and only fetched from IEX once.
+ *
+ * <p>Stored prices are never updated, so a price always reports itself as new. Saving one then
+ * persists it straight away instead of merging it, which would first select the row by its key;
+ * the store leaves out prices it already holds before saving.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@NoArgsConstructor(access = AccessLevel.PRIVATE) // For jpa and jackson
 @Data
 @Builder
-public class IexHistoricalPrice {
+@Entity
+@IdClass(IexHistoricalPrice.Key.class)
+public class IexHistoricalPrice implements Persistable<IexHistoricalPrice.Key> {
 
+  @Id
   private String symbol;
+
+  @Id
+  @Column(name = "price_date")
   private Instant date;
+
+  @Column(precision = 19, scale = 4)
   private BigDecimal open;
+
+  @Column(precision = 19, scale = 4)
   private BigDecimal close;
+
+  @Column(precision = 19, scale = 4)
   private BigDecimal high;
+
+  @Column(precision = 19, scale = 4)
   private BigDecimal low;
+
+  @Column(precision = 19)
   private BigDecimal volume;
+
+  @Override
+  @JsonIgnore
+  @Transient
+  public Key getId() {
+    return new Key(symbol, date);
+  }
+
+  @Override
+  @JsonIgnore
+  @Transient
+  public boolean isNew() {
+    return true;
+  }
+
+  /**
+   * The primary key of a stored price: one bar per symbol per day.
+   */
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class Key implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String symbol;
+
+    private Instant date;
+  }
 }
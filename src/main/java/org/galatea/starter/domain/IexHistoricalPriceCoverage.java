@@ -0,0 +1,67 @@
+package org.galatea.starter.domain;
+
+import java.time.LocalDate;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * What the local store holds of a symbol's IEX historical prices. The stored span runs from the
+ * earliest to the latest day with a stored price, and every price inside it is held: days inside it
+ * with no stored price are days IEX had no price for, e.g. market holidays. The checked span is the
+ * range of days IEX has been asked for, which can reach past the stored span at either end when
+ * its first or last days had no trading.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@NoArgsConstructor(access = AccessLevel.PRIVATE) // For jpa
+@Builder
+@Data
+@Entity
+public class IexHistoricalPriceCoverage {
+
+  @Id
+  private String symbol;
+
+  private LocalDate fromDate;
+
+  private LocalDate toDate;
+
+  private LocalDate checkedFrom;
+
+  private LocalDate checkedTo;
+
+  /**
+   * Whether the given day falls inside the stored span.
+   */
+  public boolean covers(final LocalDate date) {
+    return fromDate != null && !date.isBefore(fromDate) && !date.isAfter(toDate);
+  }
+
+  /**
+   * Whether IEX has already been asked for every day from the given day to the end of the checked
+   * span.
+   */
+  public boolean hasChecked(final LocalDate from) {
+    return checkedFrom != null && !from.isBefore(checkedFrom);
+  }
+
+  /**
+   * Widen the stored span to include the given day.
+   */
+  public void include(final LocalDate date) {
+    fromDate = fromDate == null || date.isBefore(fromDate) ? date : fromDate;
+    toDate = toDate == null || date.isAfter(toDate) ? date : toDate;
+  }
+
+  /**
+   * Widen the checked span to include the given days.
+   */
+  public void check(final LocalDate from, final LocalDate to) {
+    checkedFrom = checkedFrom == null || from.isBefore(checkedFrom) ? from : checkedFrom;
+    checkedTo = checkedTo == null || to.isAfter(checkedTo) ? to : checkedTo;
+  }
+}
@@ -0,0 +1,17 @@
+package org.galatea.starter.domain;
+
+import java.util.List;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * The last traded prices found for a list of symbols, along with the symbols whose prices couldn't
+ * be fetched from IEX (e.g. because their part of the request timed out).
+ */
+@Data
+@Builder
+public class IexLastTradedPriceResult {
+
+  private List<IexLastTradedPrice> prices;
+  private List<String> failedSymbols;
+}
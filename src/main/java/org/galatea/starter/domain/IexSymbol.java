@@ -1,5 +1,6 @@
 package org.galatea.starter.domain;
 
+import com.fasterxml.jackson.annotation.JsonAlias;
 import java.time.LocalDate;
 import lombok.Builder;
 import lombok.Data;
@@ -15,4 +16,12 @@ public class IexSymbol {
   private String type;
   private String iexId;
 
+  /**
+   * IEX sends the enabled flag as "isEnabled", but lombok names the accessors for this field
+   * isEnabled() and setEnabled(), which jackson maps to an "enabled" property.
+   */
+  @JsonAlias("isEnabled")
+  public void setEnabled(final boolean enabled) {
+    this.isEnabled = enabled;
+  }
 }
@@ -0,0 +1,46 @@
+package org.galatea.starter.domain;
+
+import java.time.Instant;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Transient;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * A message whose agreements have been settled, keyed on its JMS message id. The id being the
+ * primary key means a message redelivered after its agreements were settled can't be settled
+ * again, even by another instance of the application.
+ *
+ * <p>Processed messages are only ever inserted, so they always report themselves as new. That way
+ * saving one persists it straight away instead of merging it, which would first select the row
+ * and turn the insert of an already recorded message into an update, hiding the duplicate.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@NoArgsConstructor(access = AccessLevel.PRIVATE) // For jpa
+@Builder
+@Data
+@Entity
+public class ProcessedMessage implements Persistable<String> {
+
+  @Id
+  private String messageId;
+
+  private Instant processedAt;
+
+  @Override
+  @Transient
+  public String getId() {
+    return messageId;
+  }
+
+  @Override
+  @Transient
+  public boolean isNew() {
+    return true;
+  }
+}
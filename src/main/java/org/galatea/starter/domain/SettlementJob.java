@@ -0,0 +1,103 @@
+package org.galatea.starter.domain;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+/**
+ * The progress of an asynchronous settlement: trade agreements that were accepted straight away and
+ * are settled in the background, a chunk at a time.
+ *
+ * <p>A job is updated by the one worker thread settling it and may be read by any number of
+ * request threads at once.
+ */
+@ToString
+public class SettlementJob {
+
+  /**
+   * Where a job is in its life.
+   */
+  public enum Status {
+    /** Waiting for a worker. */
+    QUEUED,
+    /** Being settled. */
+    RUNNING,
+    /** Every agreement has been settled. */
+    COMPLETED,
+    /** Settling stopped at a failed chunk; the missions of earlier chunks were still spawned. */
+    FAILED
+  }
+
+  @Getter
+  @NonNull
+  private final String id;
+
+  @Getter
+  private final int agreementCount;
+
+  @Getter
+  private volatile Status status = Status.QUEUED;
+
+  @Getter
+  private volatile int settledAgreementCount;
+
+  /** Why the job failed, or null if it hasn't. */
+  @Getter
+  private volatile RuntimeException failure;
+
+  private final Set<Long> missionIds = new LinkedHashSet<>();
+
+  /**
+   * Creates a queued job.
+   *
+   * @param id the id that the job's status is looked up by
+   * @param agreementCount the number of agreements to settle
+   */
+  public SettlementJob(@NonNull final String id, final int agreementCount) {
+    this.id = id;
+    this.agreementCount = agreementCount;
+  }
+
+  /**
+   * The ids of the missions spawned so far.
+   */
+  public synchronized Set<Long> getMissionIds() {
+    return Collections.unmodifiableSet(new LinkedHashSet<>(missionIds));
+  }
+
+  /**
+   * Record that a worker has started settling the job.
+   */
+  public void started() {
+    status = Status.RUNNING;
+  }
+
+  /**
+   * Record that some of the job's agreements have been settled.
+   *
+   * @param agreements the number of agreements settled
+   * @param spawnedMissionIds the ids of the missions spawned for them
+   */
+  public synchronized void settled(final int agreements, final Set<Long> spawnedMissionIds) {
+    missionIds.addAll(spawnedMissionIds);
+    settledAgreementCount += agreements;
+  }
+
+  /**
+   * Record that every agreement of the job has been settled.
+   */
+  public void completed() {
+    status = Status.COMPLETED;
+  }
+
+  /**
+   * Record that the job has stopped because of the given exception.
+   */
+  public void failed(final RuntimeException failure) {
+    this.failure = failure;
+    status = Status.FAILED;
+  }
+}
@@ -1,5 +1,9 @@
 package org.galatea.starter.domain;
 
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
@@ -13,7 +17,11 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessage;
 import org.galatea.starter.utils.validation.StringEnumeration;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 /* For builder since we explicitly want to make the all args ctor private */
 @AllArgsConstructor(access = AccessLevel.PRIVATE)
@@ -22,10 +30,17 @@ import org.galatea.starter.utils.validation.StringEnumeration;
 @Data
 @Entity
 @XmlRootElement(name = "settlementMission")
-public class SettlementMission {
+public class SettlementMission implements Serializable {
 
+  private static final long serialVersionUID = 1L;
+
+  // Ids are reserved in blocks (see BlockSequenceGenerator) so that saveAll can batch its inserts
   @Id
-  @GeneratedValue(strategy = GenerationType.AUTO)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "mission_id")
+  @GenericGenerator(name = "mission_id",
+      strategy = "org.galatea.starter.utils.jpa.BlockSequenceGenerator",
+      parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM,
+          value = "mission_id_seq"))
   protected Long id;
 
   @NonNull
@@ -48,4 +63,49 @@ public class SettlementMission {
   @Version
   @NonNull
   protected Long version;
+
+  /*
+   * Missions are serialized as a SettlementMissionProtoMessage (e.g. when the missions cache moves
+   * them out to its disk tier), which takes a fraction of the space of default java serialization.
+   */
+  private Object writeReplace() {
+    return new SerializedForm(this);
+  }
+
+  private void readObject(final ObjectInputStream in) throws InvalidObjectException {
+    throw new InvalidObjectException("Missions are deserialized from their SerializedForm");
+  }
+
+  private static class SerializedForm implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] message;
+
+    SerializedForm(final SettlementMission mission) {
+      SettlementMissionProtoMessage.Builder builder = SettlementMissionProtoMessage.newBuilder()
+          .setInstrument(mission.getInstrument()).setExternalParty(mission.getExternalParty())
+          .setDepot(mission.getDepot()).setDirection(mission.getDirection())
+          .setQty(mission.getQty()).setVersion(mission.getVersion());
+      // Ids start from 1, so an unset (zero) id in the message stands for a mission not yet saved
+      if (mission.getId() != null) {
+        builder.setId(mission.getId());
+      }
+      this.message = builder.build().toByteArray();
+    }
+
+    private Object readResolve() throws InvalidObjectException {
+      try {
+        SettlementMissionProtoMessage parsed = SettlementMissionProtoMessage.parseFrom(message);
+        return SettlementMission.builder().id(parsed.getId() == 0 ? null : parsed.getId())
+            .instrument(parsed.getInstrument()).externalParty(parsed.getExternalParty())
+            .depot(parsed.getDepot()).direction(parsed.getDirection()).qty(parsed.getQty())
+            .version(parsed.getVersion()).build();
+      } catch (InvalidProtocolBufferException e) {
+        InvalidObjectException invalid = new InvalidObjectException("Invalid mission message");
+        invalid.initCause(e);
+        throw invalid;
+      }
+    }
+  }
 }
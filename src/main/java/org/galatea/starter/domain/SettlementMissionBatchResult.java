@@ -0,0 +1,23 @@
+package org.galatea.starter.domain;
+
+import java.util.List;
+import java.util.Map;
+import lombok.Builder;
+import lombok.Data;
+import lombok.Singular;
+
+/**
+ * The outcome of a bulk update or delete of missions: the ids of the missions that were written,
+ * and the reason each of the others wasn't (e.g. it didn't exist, or its version was out of date).
+ */
+@Data
+@Builder
+public class SettlementMissionBatchResult {
+
+  @Singular
+  private List<Long> succeededIds;
+
+  // Keyed by mission id, in the order the missions were given
+  @Singular
+  private Map<Long, RuntimeException> failures;
+}
@@ -0,0 +1,9 @@
+package org.galatea.starter.domain.rpsy;
+
+import org.galatea.starter.domain.IexHistoricalPriceCoverage;
+import org.springframework.data.repository.CrudRepository;
+
+public interface IIexHistoricalPriceCoverageRpsy
+    extends CrudRepository<IexHistoricalPriceCoverage, String> {
+
+}
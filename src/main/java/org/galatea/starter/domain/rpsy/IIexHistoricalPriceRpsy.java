@@ -0,0 +1,38 @@
+package org.galatea.starter.domain.rpsy;
+
+import java.time.Instant;
+import java.util.List;
+import org.galatea.starter.domain.IexHistoricalPrice;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+public interface IIexHistoricalPriceRpsy
+    extends CrudRepository<IexHistoricalPrice, IexHistoricalPrice.Key> {
+
+  /**
+   * Retrieves the stored prices of a symbol between two instants, in date order. Answered from the
+   * primary key index on (symbol, date).
+   *
+   * @param symbol the symbol to retrieve prices for
+   * @param from only prices on or after this instant are returned
+   * @param to only prices before this instant are returned
+   */
+  @Query("select p from IexHistoricalPrice p where p.symbol = :symbol and p.date >= :from"
+      + " and p.date < :to order by p.date")
+  List<IexHistoricalPrice> findPrices(@Param("symbol") String symbol,
+      @Param("from") Instant from, @Param("to") Instant to);
+
+  /**
+   * Retrieves the dates a symbol has a stored price for between two instants. Answered from the
+   * primary key index alone.
+   *
+   * @param symbol the symbol to retrieve dates for
+   * @param from only dates on or after this instant are returned
+   * @param to only dates before this instant are returned
+   */
+  @Query("select p.date from IexHistoricalPrice p where p.symbol = :symbol and p.date >= :from"
+      + " and p.date < :to")
+  List<Instant> findDates(@Param("symbol") String symbol, @Param("from") Instant from,
+      @Param("to") Instant to);
+}
@@ -0,0 +1,22 @@
+package org.galatea.starter.domain.rpsy;
+
+import java.time.Instant;
+import org.galatea.starter.domain.ProcessedMessage;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface IProcessedMessageRpsy extends CrudRepository<ProcessedMessage, String> {
+
+  /**
+   * Deletes every message processed before the given time, in a single statement.
+   *
+   * @return the number of messages deleted
+   */
+  @Transactional
+  @Modifying
+  @Query("delete from ProcessedMessage m where m.processedAt < :before")
+  int deleteProcessedBefore(@Param("before") Instant before);
+}
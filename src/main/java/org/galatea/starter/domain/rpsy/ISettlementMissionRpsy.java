@@ -4,8 +4,12 @@ import java.util.List;
 import java.util.Optional;
 import org.galatea.starter.domain.SettlementMission;
 import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
 public interface ISettlementMissionRpsy extends CrudRepository<SettlementMission, Long> {
 
@@ -14,6 +18,20 @@ public interface ISettlementMissionRpsy extends CrudRepository<SettlementMission
    */
   List<SettlementMission> findByDepot(String depot);
 
+  /**
+   * Retrieves the next page of missions in id order, starting after the given id. Paging on the id
+   * (rather than with an offset) keeps every page as cheap to fetch as the first one.
+   *
+   * @param afterId only missions with an id greater than this are returned
+   * @param toId only missions with an id less than or equal to this are returned
+   * @param depot only missions with this depot are returned, or missions for any depot if null
+   * @param page the page size; the page number should always be 0
+   */
+  @Query("select m from SettlementMission m where m.id > :afterId and m.id <= :toId"
+      + " and (:depot is null or m.depot = :depot) order by m.id")
+  List<SettlementMission> findPageAfter(@Param("afterId") Long afterId, @Param("toId") Long toId,
+      @Param("depot") String depot, Pageable page);
+
   @Override
   @Cacheable(cacheNames = "missions", sync = true)
   Optional<SettlementMission> findById(Long id);
@@ -23,10 +41,12 @@ public interface ISettlementMissionRpsy extends CrudRepository<SettlementMission
   void deleteById(Long id);
 
   /**
-   * 'p0' required in key because java does not retain parameter names during compilation unless
-   * specified. You must use position parameter bindings otherwise.
+   * Write-through: the saved mission (with its new version) replaces any cached copy, so the read
+   * that usually follows an update doesn't go back to the database. The key comes from the result
+   * since a new mission has no id until it's saved. Missions saved in bulk are cached by
+   * SettlementMissionCache instead.
    */
   @Override
-  @CacheEvict(cacheNames = "missions", key = "#p0.getId()")
+  @CachePut(cacheNames = "missions", key = "#result.id")
   <S extends SettlementMission> S save(S entity);
 }
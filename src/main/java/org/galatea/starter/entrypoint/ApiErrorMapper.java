@@ -0,0 +1,48 @@
+package org.galatea.starter.entrypoint;
+
+import javax.validation.ConstraintViolationException;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decides the status and message a failure is reported with. RestExceptionHandler uses this to
+ * answer a request that failed, and bulk requests and settlement jobs use it to report each item
+ * that failed the same way a request for that item alone would be answered.
+ */
+@Slf4j
+@Component
+public class ApiErrorMapper {
+
+  private static final String INTERNAL_ERROR_MESSAGE = "An internal application error occurred.";
+
+  /**
+   * Get the error that a request failing with the given exception is answered with.
+   */
+  public ApiError toApiError(final RuntimeException exception) {
+    if (exception instanceof EntityNotFoundException) {
+      return new ApiError(HttpStatus.NOT_FOUND, exception.toString());
+    } else if (exception instanceof ConstraintViolationException) {
+      log.debug("Invalid input data sent", exception);
+      return new ApiError(HttpStatus.BAD_REQUEST,
+          ConstraintViolationMessageFormatter.toMessage((ConstraintViolationException) exception));
+    } else if (exception instanceof ObjectOptimisticLockingFailureException) {
+      log.debug("Outdated input data sent", exception);
+      return new ApiError(HttpStatus.CONFLICT, exception.toString());
+    } else if (exception instanceof DataAccessException) {
+      log.error("Unexpected data access error", exception);
+      return new ApiError(HttpStatus.INTERNAL_SERVER_ERROR, INTERNAL_ERROR_MESSAGE);
+    } else if (exception instanceof TaskRejectedException) {
+      log.warn("Turning away work the application has no room for", exception);
+      return new ApiError(HttpStatus.TOO_MANY_REQUESTS,
+          "Too many requests are being processed. Please try again later.");
+    }
+
+    log.error("Unexpected error", exception);
+    return new ApiError(HttpStatus.INTERNAL_SERVER_ERROR, INTERNAL_ERROR_MESSAGE);
+  }
+}
@@ -11,6 +11,7 @@ import lombok.extern.slf4j.Slf4j;
 import net.sf.aspect4log.Log;
 import net.sf.aspect4log.Log.Level;
 import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.SettlementMissionBatchResult;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.service.SettlementService;
 
@@ -53,6 +54,14 @@ public abstract class BaseSettlementRestController extends BaseRestController {
     return settlementService.findMissions(ids);
   }
 
+  /**
+   * Lazily retrieves settlement missions from the settlement service, a page at a time.
+   */
+  protected Iterable<SettlementMission> streamMissionsInternal(final String depot,
+      final Long fromId, final Long toId, final int pageSize) {
+    return settlementService.streamMissions(depot, fromId, toId, pageSize);
+  }
+
   /**
    * Updates settlement mission, if it exists.
    */
@@ -71,4 +80,19 @@ public abstract class BaseSettlementRestController extends BaseRestController {
   protected void deleteMissionInternal(final Long id) {
     settlementService.deleteMission(id);
   }
+
+  /**
+   * Updates many settlement missions at once, reporting on each one that couldn't be updated.
+   */
+  protected SettlementMissionBatchResult updateMissionsInternal(
+      final List<SettlementMission> missions) {
+    return settlementService.updateMissions(missions);
+  }
+
+  /**
+   * Deletes many settlement missions at once, reporting on each one that couldn't be deleted.
+   */
+  protected SettlementMissionBatchResult deleteMissionsInternal(final List<Long> ids) {
+    return settlementService.deleteMissions(ids);
+  }
 }
@@ -0,0 +1,96 @@
+package org.galatea.starter.entrypoint;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.utils.FuseHttpTraceRepository;
+import org.galatea.starter.utils.HttpTraceQuery;
+import org.springframework.boot.actuate.trace.http.HttpTrace;
+import org.springframework.boot.actuate.trace.http.HttpTrace.Request;
+import org.springframework.boot.actuate.trace.http.HttpTrace.Response;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Lets operators search the traces of recent HTTP requests, e.g. for the slowest requests of the
+ * last few minutes or every request that failed with a given status. Its path is under /trace, so
+ * searching isn't traced itself.
+ *
+ * <p>Traces are recorded with every header, but credentials (the Authorization and Cookie request
+ * headers and the Set-Cookie response header) are stripped from the traces returned here.
+ */
+@RequiredArgsConstructor
+@Slf4j
+@RestController
+public class HttpTraceRestController {
+
+  private static final Collection<String> REDACTED_REQUEST_HEADERS =
+      Arrays.asList(HttpHeaders.AUTHORIZATION, HttpHeaders.COOKIE);
+
+  private static final Collection<String> REDACTED_RESPONSE_HEADERS =
+      Arrays.asList(HttpHeaders.SET_COOKIE);
+
+  @NonNull
+  private FuseHttpTraceRepository traceRepository;
+
+  /**
+   * Find recorded traces. Every filter is optional.
+   *
+   * @param status only traces of responses with this status are returned.
+   * @param pathPrefix only traces of requests whose path starts with this are returned.
+   * @param from only traces of requests received at or after this time (e.g.
+   *     2019-01-01T09:00:00Z) are returned.
+   * @param to only traces of requests received at or before this time are returned.
+   * @param slowest if set, the slowest this many matching traces are returned, slowest first.
+   * @param limit otherwise, at most this many matching traces are returned, most recent first.
+   * @return the matching traces, without their credentials.
+   */
+  @GetMapping(value = "${mvc.findTracesPath}", produces = {MediaType.APPLICATION_JSON_VALUE})
+  public List<HttpTrace> findTraces(
+      @RequestParam(value = "status", required = false) final Integer status,
+      @RequestParam(value = "pathPrefix", required = false) final String pathPrefix,
+      @RequestParam(value = "from", required = false) final Instant from,
+      @RequestParam(value = "to", required = false) final Instant to,
+      @RequestParam(value = "slowest", required = false) final Integer slowest,
+      @RequestParam(value = "limit", defaultValue = "100") final int limit) {
+    HttpTraceQuery query = HttpTraceQuery.builder().status(status).pathPrefix(pathPrefix)
+        .from(from).to(to).limit(limit).build();
+    List<HttpTrace> traces = slowest != null ? traceRepository.findSlowest(query, slowest)
+        : traceRepository.find(query);
+    return traces.stream().map(HttpTraceRestController::redact).collect(Collectors.toList());
+  }
+
+  /**
+   * Copy the trace without the headers that carry credentials. The recorded trace is left alone.
+   */
+  private static HttpTrace redact(final HttpTrace trace) {
+    Request request = trace.getRequest();
+    Response response = trace.getResponse();
+    return new HttpTrace(
+        new Request(request.getMethod(), request.getUri(),
+            withoutHeaders(request.getHeaders(), REDACTED_REQUEST_HEADERS),
+            request.getRemoteAddress()),
+        response == null ? null : new Response(response.getStatus(),
+            withoutHeaders(response.getHeaders(), REDACTED_RESPONSE_HEADERS)),
+        trace.getTimestamp(), trace.getPrincipal(), trace.getSession(), trace.getTimeTaken());
+  }
+
+  private static Map<String, List<String>> withoutHeaders(
+      final Map<String, List<String>> headers, final Collection<String> redacted) {
+    // Header names are case-insensitive
+    Map<String, List<String>> kept = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    kept.putAll(headers);
+    redacted.forEach(kept::remove);
+    return kept;
+  }
+}
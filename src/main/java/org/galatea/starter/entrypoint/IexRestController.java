@@ -5,6 +5,8 @@ import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -14,10 +16,12 @@ import org.galatea.starter.domain.IexHistoricalPrice;
 import org.galatea.starter.domain.IexLastTradedPrice;
 import org.galatea.starter.domain.IexSymbol;
 import org.galatea.starter.service.IexService;
+import org.galatea.starter.service.IexSymbolUniverse;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -31,6 +35,8 @@ import org.springframework.web.server.ResponseStatusException;
 @RequiredArgsConstructor
 public class IexRestController {
 
+  public static final String FAILED_SYMBOLS_HEADER = "X-Failed-Symbols";
+
   @NonNull
   private IexService iexService;
 
@@ -38,30 +44,72 @@ public class IexRestController {
   private List<String> iexValidRanges;
 
   /**
-   * Exposes an endpoint to get all the symbols available on IEX.
+   * Exposes an endpoint to get all the symbols available on IEX. The list is serialized once per
+   * snapshot and carries an ETag, so clients polling with If-None-Match get a 304 until it changes.
    *
-   * @return a list of all IexStockSymbols.
+   * @return a list of all IexStockSymbols, as JSON.
    */
   @GetMapping(value = "${mvc.iex.getAllSymbolsPath}", produces = {MediaType.APPLICATION_JSON_VALUE})
-  public List<IexSymbol> getAllStockSymbols() {
-    return iexService.getAllSymbols();
+  public ResponseEntity<byte[]> getAllStockSymbols() {
+    IexSymbolUniverse.Snapshot snapshot = iexService.getSymbolSnapshot();
+    // Spring compares the ETag against If-None-Match and answers 304 Not Modified if it matches
+    return ResponseEntity.ok()
+        .eTag(snapshot.getEtag())
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(snapshot.getJson());
   }
 
   /**
-   * Get the last traded price for each of the symbols passed in.
+   * Search the symbols available on IEX. Every filter is optional.
+   *
+   * @param prefix only symbols starting with this prefix are returned.
+   * @param type only symbols of this type (e.g. cs for common stock) are returned.
+   * @param enabled only symbols with this enabled flag are returned.
+   * @param iexId only the symbol with this IEX id is returned; the other filters are ignored.
+   * @return the matching IexStockSymbols, in symbol order.
+   */
+  @GetMapping(value = "${mvc.iex.searchSymbolsPath}", produces = {MediaType.APPLICATION_JSON_VALUE})
+  public List<IexSymbol> searchStockSymbols(
+      @RequestParam(value = "prefix", required = false) final String prefix,
+      @RequestParam(value = "type", required = false) final String type,
+      @RequestParam(value = "enabled", required = false) final Boolean enabled,
+      @RequestParam(value = "iexId", required = false) final String iexId) {
+    IexSymbolUniverse.Snapshot snapshot = iexService.getSymbolSnapshot();
+    if (iexId != null) {
+      return snapshot.findByIexId(iexId)
+          .map(Collections::singletonList)
+          .orElse(Collections.emptyList());
+    }
+    return snapshot.search(prefix == null ? null : prefix.toUpperCase(Locale.ROOT), type, enabled);
+  }
+
+  /**
+   * Get the last traded price for each of the symbols passed in. If the prices of some symbols
+   * couldn't be fetched, the rest are still returned and the missing symbols are listed in the
+   * X-Failed-Symbols header.
+   *
+   * <p>The request is handled asynchronously: the servlet thread is released while the prices are
+   * fetched from IEX, and the response is written once they arrive.
    *
    * @param symbols list of symbols to get last traded price for.
    * @return a List of IexLastTradedPrice objects for the given symbols.
    */
   @GetMapping(value = "${mvc.iex.getLastTradedPricePath}", produces = {
           MediaType.APPLICATION_JSON_VALUE})
-  public List<IexLastTradedPrice> getLastTradedPrice(
+  public CompletableFuture<ResponseEntity<List<IexLastTradedPrice>>> getLastTradedPrice(
           @RequestParam(value = "symbols") final List<String> symbols) {
-    return iexService.getLastTradedPriceForSymbols(symbols);
+    return iexService.getLastTradedPriceForSymbols(symbols).thenApply(result -> {
+      ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+      if (!result.getFailedSymbols().isEmpty()) {
+        response.header(FAILED_SYMBOLS_HEADER, String.join(",", result.getFailedSymbols()));
+      }
+      return response.body(result.getPrices());
+    });
   }
 
   /**
-   * Get historical pricing data for the given symbol on the given date
+   * Get historical pricing data for the given symbol on the given date. Handled asynchronously,
+   * like the last traded price endpoint.
    *
    * @param symbol the symbol to retrieve data about
    * @param date   the date which should be queried
@@ -69,13 +117,13 @@ public class IexRestController {
    */
   @GetMapping(value = "${mvc.iex.getHistoricalPricePath}", produces = {
           MediaType.APPLICATION_JSON_VALUE})
-  public List<IexHistoricalPrice> getHistoricalPrice(
+  public CompletableFuture<List<IexHistoricalPrice>> getHistoricalPrice(
           @RequestParam(value = "symbol", required = true) final String symbol,
           @RequestParam(value = "range", required = false) final String range,
           @RequestParam(value = "date", required = false) @DateTimeFormat(pattern = "yyyyMMdd") final LocalDate date) {
     //handle empty symbol in line with existing empty symbol behaviour
     if (symbol.equals("")) {
-      return Collections.emptyList();
+      return CompletableFuture.completedFuture(Collections.emptyList());
     }
     //date mode
     else if ((date != null) && (range == null)) {
@@ -2,8 +2,11 @@ package org.galatea.starter.entrypoint;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import javax.validation.ConstraintViolationException;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -20,13 +23,16 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
  * ApiError wrapper class).
  */
 @ControllerAdvice
+@RequiredArgsConstructor
 @Slf4j
 public class RestExceptionHandler {
 
+  @NonNull
+  private final ApiErrorMapper apiErrorMapper;
+
   @ExceptionHandler(EntityNotFoundException.class)
   protected ResponseEntity<Object> handleEntityNotFound(final EntityNotFoundException exception) {
-    ApiError error = new ApiError(HttpStatus.NOT_FOUND, exception.toString());
-    return buildResponseEntity(error);
+    return buildResponseEntity(apiErrorMapper.toApiError(exception));
   }
 
   @ExceptionHandler(HttpMessageNotReadableException.class)
@@ -39,21 +45,13 @@ public class RestExceptionHandler {
 
   @ExceptionHandler(DataAccessException.class)
   protected ResponseEntity<Object> handleDataAccessException(final DataAccessException exception) {
-    log.error("Unexpected data access error", exception);
-
-    String errorMessage = "An internal application error occurred.";
-    ApiError error = new ApiError(HttpStatus.INTERNAL_SERVER_ERROR, errorMessage);
-    return buildResponseEntity(error);
+    return buildResponseEntity(apiErrorMapper.toApiError(exception));
   }
 
   @ExceptionHandler(ConstraintViolationException.class)
   protected ResponseEntity<Object> handleConstraintViolation(
       final ConstraintViolationException exception) {
-    log.debug("Invalid input data sent", exception);
-    String errorMessage = ConstraintViolationMessageFormatter.toMessage(exception);
-
-    ApiError error = new ApiError(HttpStatus.BAD_REQUEST, errorMessage);
-    return buildResponseEntity(error);
+    return buildResponseEntity(apiErrorMapper.toApiError(exception));
   }
 
   @ExceptionHandler(JsonProcessingException.class)
@@ -67,10 +65,12 @@ public class RestExceptionHandler {
   @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
   protected ResponseEntity<Object> handleOptimisticLockException(
       final ObjectOptimisticLockingFailureException exception) {
-    log.debug("Outdated input data sent", exception);
+    return buildResponseEntity(apiErrorMapper.toApiError(exception));
+  }
 
-    ApiError error = new ApiError(HttpStatus.CONFLICT, exception.toString());
-    return buildResponseEntity(error);
+  @ExceptionHandler(TaskRejectedException.class)
+  protected ResponseEntity<Object> handleTaskRejected(final TaskRejectedException exception) {
+    return buildResponseEntity(apiErrorMapper.toApiError(exception));
   }
 
   private ResponseEntity<Object> buildResponseEntity(final ApiError apiError) {
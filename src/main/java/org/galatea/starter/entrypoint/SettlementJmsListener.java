@@ -1,27 +1,49 @@
 package org.galatea.starter.entrypoint;
 
+import java.io.InputStream;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
-import org.galatea.starter.service.SettlementService;
+import org.galatea.starter.service.ProcessedMessageIndex;
+import org.galatea.starter.service.SettlementBatcher;
+import org.galatea.starter.utils.jms.BytesMessageInputStream;
 import org.galatea.starter.utils.translation.ITranslator;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jms.annotation.JmsListener;
+import org.springframework.jms.support.JmsHeaders;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
+/**
+ * Spawns missions for the agreements on the JSON and protobuf agreement queues.
+ *
+ * <p>Messages are idempotent: a message the broker delivers again once its agreements have been
+ * settled is dropped, before it is translated, rather than spawning the same missions twice (see
+ * ProcessedMessageIndex).
+ *
+ * <p>The listeners take their concurrency from SettlementBatcher, which raises it while batching is
+ * enabled so that batches can fill up.
+ */
 @RequiredArgsConstructor
 @Slf4j
 @Component
 public class SettlementJmsListener {
 
   @NonNull
-  protected SettlementService settlementService;
+  protected SettlementBatcher settlementBatcher;
 
   @NonNull
-  protected ITranslator<byte[], TradeAgreement> tradeAgreementProtoTranslator;
+  protected ProcessedMessageIndex processedMessages;
+
+  @NonNull
+  protected ITranslator<InputStream, List<TradeAgreement>> tradeAgreementProtoTranslator;
 
   @NonNull
   protected ITranslator<TradeAgreementMessage, TradeAgreement> tradeAgreementMessageTranslator;
@@ -30,27 +52,64 @@ public class SettlementJmsListener {
    * Spawns Missions for any TradeAgreements pulled off the jms queue in JSON format.
    */
   @JmsListener(destination = "${jms.agreement-queue-json}",
-      concurrency = "${jms.listener-concurrency}")
-  public void settleAgreementJson(final TradeAgreementMessage agreementMessage) {
+      concurrency = "#{@settlementBatcher.listenerConcurrency}")
+  public void settleAgreementJson(final TradeAgreementMessage agreementMessage,
+      @Header(JmsHeaders.MESSAGE_ID) final String messageId,
+      @Header(JmsHeaders.REDELIVERED) final boolean redelivered) {
+    if (isDuplicate(messageId, redelivered)) {
+      return;
+    }
+
     log.info("Handling agreements {}", agreementMessage);
 
     TradeAgreement agreement = tradeAgreementMessageTranslator.translate(agreementMessage);
-    Set<Long> missionIds = settlementService.spawnMissions(Arrays.asList(agreement));
-    log.info("Created missions {}", missionIds);
+    settle(Arrays.asList(agreement), messageId);
   }
 
   /**
-   * Spawns missions for any TradeAgreements pulled off the jms queue in protobuf format.
+   * Spawns missions for any TradeAgreements pulled off the jms queue in protobuf format. A message
+   * may hold a single TradeAgreementProtoMessage or a TradeAgreementProtoMessages batch; either way
+   * it is parsed straight from the message body.
    */
   @JmsListener(destination = "${jms.agreement-queue-proto}",
-      concurrency = "${jms.listener-concurrency}")
-  public void settleAgreementProto(final byte[] message) {
+      concurrency = "#{@settlementBatcher.listenerConcurrency}")
+  public void settleAgreementProto(final BytesMessage message) throws JMSException {
+    String messageId = message.getJMSMessageID();
+    if (isDuplicate(messageId, message.getJMSRedelivered())) {
+      return;
+    }
+
     log.info("Received message. Translating.");
-    TradeAgreement agreement = tradeAgreementProtoTranslator.translate(message);
+    List<TradeAgreement> agreements =
+        tradeAgreementProtoTranslator.translate(new BytesMessageInputStream(message));
 
-    log.info("Handling agreement {}", agreement);
+    if (agreements.isEmpty()) {
+      log.info("Message held no agreements");
+      return;
+    }
+
+    log.info("Handling {} agreement(s)", agreements.size());
+    settle(agreements, messageId);
+  }
+
+  private boolean isDuplicate(final String messageId, final boolean redelivered) {
+    if (messageId != null && processedMessages.isProcessed(messageId, redelivered)) {
+      log.info("Dropping message {}, which has already been processed", messageId);
+      return true;
+    }
+    return false;
+  }
 
-    Set<Long> missionIds = settlementService.spawnMissions(Arrays.asList(agreement));
-    log.info("Created missions {}", missionIds);
+  private void settle(final List<TradeAgreement> agreements, final String messageId) {
+    try {
+      Set<Long> missionIds = settlementBatcher.settle(agreements, messageId);
+      log.info("Created missions {}", missionIds);
+    } catch (DataIntegrityViolationException e) {
+      // Another delivery of the same message (e.g. on another instance) got there first
+      if (messageId == null || !processedMessages.isProcessed(messageId, true)) {
+        throw e;
+      }
+      log.info("Dropping message {}, which was processed by another delivery", messageId);
+    }
   }
 }
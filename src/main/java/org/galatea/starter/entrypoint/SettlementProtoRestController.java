@@ -1,8 +1,10 @@
 package org.galatea.starter.entrypoint;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.aspect4log.Log;
@@ -10,12 +12,14 @@ import net.sf.aspect4log.Log.Level;
 import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessages;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementResponseProtoMessage;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
 import org.galatea.starter.service.SettlementService;
 import org.galatea.starter.utils.translation.ITranslator;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -24,6 +28,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * REST controller that mimics the behavior of SettlementRestController but accepts and returns only
@@ -49,6 +54,9 @@ public class SettlementProtoRestController extends BaseSettlementRestController
   @Value("${mvc.getMissionPath}")
   private String getMissionPath;
 
+  @Value("${mvc.export-page-size:1000}")
+  private int exportPageSize;
+
   /**
    * Initializes a new instance of this class with the required arguments that will be autowired by
    * spring boot. This constructor was manually added because of the base class that has no default
@@ -103,4 +111,55 @@ public class SettlementProtoRestController extends BaseSettlementRestController
     // could add a test for the not-found case in order to meet coverage requirements
     return new ResponseEntity<>(HttpStatus.NOT_FOUND);
   }
+
+  /**
+   * Retrieves multiple existing settlement missions in a single SettlementMissionProtoMessages.
+   * Ids with no mission are left out, as they are by the JSON/XML getMissions.
+   */
+  @GetMapping(value = "${mvc.getMissionsPath}", produces = APPLICATION_X_PROTOBUF)
+  public SettlementMissionProtoMessages getMissions(
+      // @RequestParam to take a comma-separated list of ids from the url (ex: http://url?ids=1,2,3)
+      @RequestParam(value = "ids") final String ids,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    List<Long> idLongs = Arrays.stream(ids.split(","))
+        .map(Long::parseLong)
+        .collect(Collectors.toList());
+
+    SettlementMissionProtoMessages.Builder messages = SettlementMissionProtoMessages.newBuilder();
+    getMissionsInternal(idLongs).forEach(
+        mission -> messages.addMessage(settlementMissionTranslator.translate(mission)));
+    return messages.build();
+  }
+
+  /**
+   * Export missions as a stream of length-delimited SettlementMissionProtoMessages, for result sets
+   * too large to send as one message. The missions are read from the database a page at a time and
+   * each one is written to the response as soon as it is read.
+   *
+   * <p>Read the response with SettlementMissionProtoMessage.parseDelimitedFrom, which returns null
+   * once the stream is exhausted.
+   */
+  @GetMapping(value = "${mvc.exportMissionsPath}", produces = APPLICATION_X_PROTOBUF)
+  public ResponseEntity<StreamingResponseBody> exportMissions(
+      // @RequestParam to optionally narrow the export (ex: http://url?depot=DTC&fromId=1&toId=500)
+      @RequestParam(value = "depot", required = false) final String depot,
+      @RequestParam(value = "fromId", required = false) final Long fromId,
+      @RequestParam(value = "toId", required = false) final Long toId,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    Iterable<SettlementMission> missions =
+        streamMissionsInternal(depot, fromId, toId, exportPageSize);
+    StreamingResponseBody body = out -> {
+      for (SettlementMission mission : missions) {
+        settlementMissionTranslator.translate(mission).writeDelimitedTo(out);
+      }
+    };
+    return ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_X_PROTOBUF))
+        .body(body);
+  }
 }
@@ -1,5 +1,6 @@
 package org.galatea.starter.entrypoint;
 
+import java.net.URI;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -10,18 +11,31 @@ import lombok.extern.slf4j.Slf4j;
 import net.sf.aspect4log.Log;
 import net.sf.aspect4log.Log.Level;
 import org.galatea.starter.MvcConfig;
+import org.galatea.starter.domain.SettlementJob;
 import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.SettlementMissionBatchResult;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementBatchResponseMessage;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementBatchResponseMessage.Failure;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementJobMessage;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionList;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionMessage;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionMessages;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementResponseMessage;
 import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessages;
+import org.galatea.starter.service.SettlementJobService;
 import org.galatea.starter.service.SettlementService;
+import org.galatea.starter.utils.http.converter.CsvSerializer;
+import org.galatea.starter.utils.http.converter.JsonArraySerializer;
+import org.galatea.starter.utils.http.converter.XlsxSerializer;
 import org.galatea.starter.utils.translation.ITranslator;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -31,6 +45,8 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * REST Controller that generates and listens to http endpoints which allow the caller to create
@@ -51,12 +67,24 @@ public class SettlementRestController extends BaseSettlementRestController {
   @NonNull
   ITranslator<TradeAgreementMessages, List<TradeAgreement>> tradeAgreementTranslator;
 
+  @NonNull
+  ApiErrorMapper apiErrorMapper;
+
+  @NonNull
+  SettlementJobService settlementJobService;
+
   @Value("${mvc.settleMissionPath}")
   private String settleMissionPath;
 
   @Value("${mvc.getMissionPath}")
   private String getMissionPath;
 
+  @Value("${mvc.getSettlementJobPath}")
+  private String getSettlementJobPath;
+
+  @Value("${mvc.export-page-size:1000}")
+  private int exportPageSize;
+
   /**
    * Initializes a new instance of this class with the required arguments that will be autowired by
    * spring boot. This constructor was manually added because of the base class that has no default
@@ -66,11 +94,15 @@ public class SettlementRestController extends BaseSettlementRestController {
       final ITranslator<TradeAgreementMessages, List<TradeAgreement>> tradeAgreementTranslator,
       final ITranslator<SettlementMission, SettlementMissionMessage> settlementMissionTranslator,
       final ITranslator<SettlementMissionMessage, SettlementMission>
-          settlementMissionMsgTranslator) {
+          settlementMissionMsgTranslator,
+      final ApiErrorMapper apiErrorMapper,
+      final SettlementJobService settlementJobService) {
     super(settlementService);
     this.tradeAgreementTranslator = tradeAgreementTranslator;
     this.settlementMissionTranslator = settlementMissionTranslator;
     this.settlementMissionMsgTranslator = settlementMissionMsgTranslator;
+    this.apiErrorMapper = apiErrorMapper;
+    this.settlementJobService = settlementJobService;
   }
 
   /**
@@ -95,6 +127,53 @@ public class SettlementRestController extends BaseSettlementRestController {
     return SettlementResponseMessage.builder().spawnedMissions(missionPaths).build();
   }
 
+  /**
+   * Accept TradeAgreements to be settled in the background. The request returns as soon as the
+   * agreements have been validated and queued, with a 202 and the job's status, whose location is
+   * given in the Location header. A 429 is returned if too many jobs are already queued.
+   */
+  // @PostMapping to link http POST requests to this method
+  // @RequestBody to have the post request body deserialized into a list of TradeAgreement objects
+  @PostMapping(value = "${mvc.settlementJobsPath}", consumes = {MediaType.APPLICATION_JSON_VALUE,
+      MediaType.APPLICATION_XML_VALUE}, produces = {MediaType.APPLICATION_JSON_VALUE,
+      MediaType.APPLICATION_XML_VALUE})
+  public ResponseEntity<SettlementJobMessage> submitSettlementJob(
+      @RequestBody final TradeAgreementMessages messages,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    List<TradeAgreement> agreements = tradeAgreementTranslator.translate(messages);
+
+    SettlementJob job = settlementJobService.submit(agreements);
+
+    return ResponseEntity.accepted().location(URI.create(getSettlementJobPath + job.getId()))
+        .body(toJobMessage(job));
+  }
+
+  /**
+   * Retrieve the status of an asynchronous settlement job. Once the job is done, the response
+   * lists the missions it spawned.
+   */
+  @GetMapping(value = "${mvc.getSettlementJobPath}" + "{id}", produces = {
+      MediaType.APPLICATION_JSON_VALUE,
+      MediaType.APPLICATION_XML_VALUE})
+  public SettlementJobMessage getSettlementJob(@PathVariable final String id,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    Optional<SettlementJob> job = settlementJobService.findJob(id);
+
+    if (job.isPresent()) {
+      return toJobMessage(job.get());
+    }
+
+    throw new EntityNotFoundException(SettlementJob.class, id);
+  }
+
   /**
    * Retrieve a previously generated Mission.
    */
@@ -145,6 +224,74 @@ public class SettlementRestController extends BaseSettlementRestController {
     return new SettlementMissionList(missions);
   }
 
+  /**
+   * Export missions as a JSON array. The missions are read from the database a page at a time and
+   * written to the response as they are read, so exports of any size use a flat amount of memory.
+   */
+  // Each export format has its own method with its own 'produces' so that spring picks the right
+  // one for the Accept header or ?format= parameter
+  @GetMapping(value = "${mvc.exportMissionsPath}", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> exportMissionsJson(
+      // @RequestParam to optionally narrow the export (ex: http://url?depot=DTC&fromId=1&toId=500)
+      @RequestParam(value = "depot", required = false) final String depot,
+      @RequestParam(value = "fromId", required = false) final Long fromId,
+      @RequestParam(value = "toId", required = false) final Long toId,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    Iterable<SettlementMission> missions =
+        streamMissionsInternal(depot, fromId, toId, exportPageSize);
+    StreamingResponseBody body =
+        out -> JsonArraySerializer.serializeToJson(missions, SettlementMission.class, out);
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+  }
+
+  /**
+   * Export missions as a CSV document, streamed to the response as missions are read.
+   */
+  @GetMapping(value = "${mvc.exportMissionsPath}", produces = MvcConfig.TEXT_CSV_VALUE)
+  public ResponseEntity<StreamingResponseBody> exportMissionsCsv(
+      @RequestParam(value = "depot", required = false) final String depot,
+      @RequestParam(value = "fromId", required = false) final Long fromId,
+      @RequestParam(value = "toId", required = false) final Long toId,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    Iterable<SettlementMission> missions =
+        streamMissionsInternal(depot, fromId, toId, exportPageSize);
+    StreamingResponseBody body =
+        out -> CsvSerializer.serializeToCsv(missions, SettlementMission.class, out);
+    return ResponseEntity.ok().contentType(MvcConfig.TEXT_CSV)
+        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=SettlementMissions.csv")
+        .body(body);
+  }
+
+  /**
+   * Export missions as an XLSX spreadsheet, built with a bounded window of rows in memory.
+   */
+  @GetMapping(value = "${mvc.exportMissionsPath}", produces = MvcConfig.APPLICATION_EXCEL_VALUE)
+  public ResponseEntity<StreamingResponseBody> exportMissionsXlsx(
+      @RequestParam(value = "depot", required = false) final String depot,
+      @RequestParam(value = "fromId", required = false) final Long fromId,
+      @RequestParam(value = "toId", required = false) final Long toId,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    Iterable<SettlementMission> missions =
+        streamMissionsInternal(depot, fromId, toId, exportPageSize);
+    StreamingResponseBody body =
+        out -> XlsxSerializer.serializeToXlsx(missions, SettlementMission.class, out);
+    return ResponseEntity.ok().contentType(MvcConfig.APPLICATION_EXCEL)
+        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=SettlementMissions.xlsx")
+        .body(body);
+  }
+
   /**
    * Update an existing mission given an ID.
    */
@@ -196,4 +343,87 @@ public class SettlementRestController extends BaseSettlementRestController {
     }
   }
 
+  /**
+   * Update many existing missions at once. Each mission is updated or rejected on its own: the
+   * response lists the ids updated, along with the status and message each rejected mission would
+   * have got from updateMission (e.g. 409 for an out of date version). The whole request is
+   * rejected with a 400 if any mission has no id.
+   */
+  // @PutMapping to link http PUT requests to this method
+  // @RequestBody to have the request body deserialized into a list of SettlementMissionMessages
+  @PutMapping(value = "${mvc.updateMissionsPath}",
+      consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE},
+      produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE})
+  public SettlementBatchResponseMessage updateMissions(
+      @RequestBody final SettlementMissionMessages messages,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    // Failures are reported by id, so a mission without one can't be rejected on its own
+    if (messages.getMissions().stream().anyMatch(message -> message.getId() == null)) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+          "Every mission to update must have an id");
+    }
+
+    List<SettlementMission> missions = messages.getMissions().stream()
+        .map(settlementMissionMsgTranslator::translate)
+        .collect(Collectors.toList());
+
+    return toBatchResponse(updateMissionsInternal(missions));
+  }
+
+  /**
+   * Delete many previously created missions at once. Each mission is deleted or rejected on its
+   * own, as for updateMissions.
+   */
+  // @DeleteMapping to link http DELETE requests to this method
+  @DeleteMapping(value = "${mvc.deleteMissionsPath}", produces = {
+      MediaType.APPLICATION_JSON_VALUE,
+      MediaType.APPLICATION_XML_VALUE})
+  public SettlementBatchResponseMessage deleteMissions(
+      // @RequestParam to take a comma-separated list of ids from the url (ex: http://url?ids=1,2,3)
+      @RequestParam(value = "ids") final String ids,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    List<Long> idLongs = Arrays.stream(ids.split(","))
+        .map(Long::parseLong)
+        .collect(Collectors.toList());
+
+    return toBatchResponse(deleteMissionsInternal(idLongs));
+  }
+
+  private SettlementJobMessage toJobMessage(final SettlementJob job) {
+    SettlementJobMessage.SettlementJobMessageBuilder message = SettlementJobMessage.builder()
+        .jobId(job.getId()).status(job.getStatus().name())
+        .agreementCount(job.getAgreementCount())
+        .settledAgreementCount(job.getSettledAgreementCount());
+
+    // Failures are reported like they would be for a synchronous request, without their details
+    if (job.getFailure() != null) {
+      message.error(apiErrorMapper.toApiError(job.getFailure()).getMessage());
+    }
+
+    SettlementJob.Status status = job.getStatus();
+    if (status == SettlementJob.Status.COMPLETED || status == SettlementJob.Status.FAILED) {
+      job.getMissionIds().forEach(id -> message.spawnedMission(getMissionPath + id));
+    }
+    return message.build();
+  }
+
+  private SettlementBatchResponseMessage toBatchResponse(
+      final SettlementMissionBatchResult result) {
+    SettlementBatchResponseMessage.SettlementBatchResponseMessageBuilder response =
+        SettlementBatchResponseMessage.builder().succeededIds(result.getSucceededIds());
+    result.getFailures().forEach((id, exception) -> {
+      ApiError error = apiErrorMapper.toApiError(exception);
+      response.failure(new Failure(id, error.getStatus(), error.getMessage()));
+    });
+    return response.build();
+  }
+
 }
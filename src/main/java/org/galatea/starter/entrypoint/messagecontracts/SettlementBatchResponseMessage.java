@@ -0,0 +1,46 @@
+package org.galatea.starter.entrypoint.messagecontracts;
+
+import java.util.List;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.Singular;
+import org.springframework.http.HttpStatus;
+
+/**
+ * The response to a bulk update or delete: the ids of the missions that were written, and for each
+ * of the others the status and message a request for that mission alone would have failed with.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE) // For builder
+@NoArgsConstructor(access = AccessLevel.PRIVATE) // For spring and jackson
+@Builder
+@Data
+@XmlRootElement(name = "settlementBatchResponse")
+@XmlAccessorType(XmlAccessType.FIELD) // required if using lombok to avoid duplicate properties
+public class SettlementBatchResponseMessage {
+
+  @Singular
+  @XmlElement(name = "succeededId")
+  protected List<Long> succeededIds;
+
+  @Singular
+  @XmlElement(name = "failure")
+  protected List<Failure> failures;
+
+  @AllArgsConstructor
+  @NoArgsConstructor(access = AccessLevel.PRIVATE) // For spring and jackson
+  @Data
+  @XmlAccessorType(XmlAccessType.FIELD)
+  public static class Failure {
+
+    protected Long id;
+    protected HttpStatus status;
+    protected String message;
+  }
+}
@@ -0,0 +1,40 @@
+package org.galatea.starter.entrypoint.messagecontracts;
+
+import java.util.List;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.Singular;
+
+/**
+ * The status of an asynchronous settlement job. The spawned missions are listed once the job is
+ * done.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE) // For builder
+@NoArgsConstructor(access = AccessLevel.PRIVATE) // For spring and jackson
+@Builder
+@Data
+@XmlRootElement(name = "settlementJob")
+@XmlAccessorType(XmlAccessType.FIELD) // required if using lombok to avoid duplicate properties
+public class SettlementJobMessage {
+
+  protected String jobId;
+
+  protected String status;
+
+  protected int agreementCount;
+
+  protected int settledAgreementCount;
+
+  @Singular
+  @XmlElement(name = "spawnedMission")
+  protected List<String> spawnedMissions;
+
+  protected String error;
+}
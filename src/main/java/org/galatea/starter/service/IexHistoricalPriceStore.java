@@ -0,0 +1,242 @@
+package org.galatea.starter.service;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.IexHistoricalPrice;
+import org.galatea.starter.domain.IexHistoricalPriceCoverage;
+import org.galatea.starter.domain.rpsy.IIexHistoricalPriceCoverageRpsy;
+import org.galatea.starter.domain.rpsy.IIexHistoricalPriceRpsy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Serves IEX historical prices from the local database, only going to IEX for the days it doesn't
+ * hold yet.
+ *
+ * <p>For each symbol the store records the span of days it holds every price for, and the span of
+ * days it has asked IEX for (see IexHistoricalPriceCoverage). A range request inside the checked
+ * span is answered locally. If the checked span ends before yesterday, only the days after the last
+ * stored price are fetched, using the shortest IEX range that reaches back far enough. A range that
+ * starts before the checked span is fetched from IEX in full. Today's bar is still changing, so it
+ * is never stored or served.
+ *
+ * <p>The prices fetched and the spans they widen are saved in one transaction. Two requests may
+ * fetch the same prices at once; whichever commits second fails on the duplicate keys and leaves
+ * the prices to the first. A single day that IEX has no price for, e.g. a weekend, is remembered
+ * for a while in the "iexHistoricalEmptyDays" cache rather than asked for again on every request.
+ *
+ * <p>Only the daily ranges (ytd, 1m, 3m, 6m, 1y, 2y and 5y) are stored. Other ranges, such as max
+ * and the intraday ranges, are passed straight through to IEX.
+ */
+@Slf4j
+@Component
+public class IexHistoricalPriceStore {
+
+  public static final String EMPTY_DAYS_CACHE_NAME = "iexHistoricalEmptyDays";
+
+  // The start day of each stored range, given today's date
+  private static final Map<String, UnaryOperator<LocalDate>> RANGE_STARTS = new LinkedHashMap<>();
+
+  static {
+    // Shortest first, as the first range that reaches back far enough is used to fill a gap
+    RANGE_STARTS.put("1m", today -> today.minusMonths(1));
+    RANGE_STARTS.put("3m", today -> today.minusMonths(3));
+    RANGE_STARTS.put("6m", today -> today.minusMonths(6));
+    RANGE_STARTS.put("1y", today -> today.minusYears(1));
+    RANGE_STARTS.put("2y", today -> today.minusYears(2));
+    RANGE_STARTS.put("5y", today -> today.minusYears(5));
+    RANGE_STARTS.put("ytd", today -> today.withDayOfYear(1));
+  }
+
+  @NonNull
+  private final IexClient iexClient;
+
+  @NonNull
+  private final IIexHistoricalPriceRpsy priceRpsy;
+
+  @NonNull
+  private final IIexHistoricalPriceCoverageRpsy coverageRpsy;
+
+  @NonNull
+  private final TransactionTemplate transactionTemplate;
+
+  @NonNull
+  private final Cache emptyDays;
+
+  @NonNull
+  private final Clock clock;
+
+  /**
+   * Creates a store that fills itself from the given client.
+   */
+  @Autowired
+  public IexHistoricalPriceStore(final IexClient iexClient, final IIexHistoricalPriceRpsy priceRpsy,
+      final IIexHistoricalPriceCoverageRpsy coverageRpsy,
+      final TransactionTemplate transactionTemplate, final CacheManager cacheManager) {
+    this(iexClient, priceRpsy, coverageRpsy, transactionTemplate, cacheManager,
+        Clock.systemUTC());
+  }
+
+  IexHistoricalPriceStore(final IexClient iexClient, final IIexHistoricalPriceRpsy priceRpsy,
+      final IIexHistoricalPriceCoverageRpsy coverageRpsy,
+      final TransactionTemplate transactionTemplate, final CacheManager cacheManager,
+      final Clock clock) {
+    this.iexClient = iexClient;
+    this.priceRpsy = priceRpsy;
+    this.coverageRpsy = coverageRpsy;
+    this.transactionTemplate = transactionTemplate;
+    this.emptyDays = Objects.requireNonNull(cacheManager.getCache(EMPTY_DAYS_CACHE_NAME),
+        "No cache named " + EMPTY_DAYS_CACHE_NAME + " is configured");
+    this.clock = clock;
+  }
+
+  /**
+   * Get historical pricing data for the given symbol on the given date.
+   *
+   * @param symbol the symbol to retrieve data about
+   * @param date the date which should be queried
+   * @return historical pricing data for the given symbol on the given date
+   */
+  public List<IexHistoricalPrice> getPriceOnDate(final String symbol, final LocalDate date) {
+    String key = symbol.toUpperCase(Locale.ROOT);
+    List<IexHistoricalPrice> stored =
+        priceRpsy.findPrices(key, startOf(date), startOf(date.plusDays(1)));
+    String emptyDayKey = key + "/" + date;
+    if (!stored.isEmpty() || isCovered(key, date) || emptyDays.get(emptyDayKey) != null) {
+      return stored;
+    }
+
+    log.info("Fetching historical price for {} on {} from IEX", key, date);
+    List<IexHistoricalPrice> fetched =
+        store(key, iexClient.getHistoricalPriceOnDate(key, date), null, null);
+    if (fetched.isEmpty()) {
+      emptyDays.put(emptyDayKey, Boolean.TRUE);
+    }
+    return fetched;
+  }
+
+  /**
+   * Get historical pricing data for the given symbol and range.
+   *
+   * @param symbol the symbol to retrieve data about
+   * @param range the range to query (max, 5y, 2y, 1y, ytd, 6m, 3m, 1m, 1mm, 5d, 5dm, date, dynamic)
+   * @return historical pricing data for the given symbol and range
+   */
+  public List<IexHistoricalPrice> getPricesForRange(final String symbol, final String range) {
+    UnaryOperator<LocalDate> rangeStart = RANGE_STARTS.get(range);
+    if (rangeStart == null) {
+      return iexClient.getHistoricalPriceForRange(symbol, range);
+    }
+
+    String key = symbol.toUpperCase(Locale.ROOT);
+    LocalDate today = LocalDate.now(clock);
+    LocalDate from = rangeStart.apply(today);
+    LocalDate lastCompleteDay = today.minusDays(1);
+    Optional<IexHistoricalPriceCoverage> coverage = coverageRpsy.findById(key);
+
+    if (!coverage.isPresent() || !coverage.get().hasChecked(from)) {
+      log.info("Fetching {} of historical prices for {} from IEX", range, key);
+      return store(key, iexClient.getHistoricalPriceForRange(key, range), from, lastCompleteDay);
+    }
+
+    if (coverage.get().getCheckedTo().isBefore(lastCompleteDay)) {
+      // Start after the last stored price rather than the last day checked, in case IEX hadn't
+      // published that day's price yet when it was checked
+      LocalDate gapStart = coverage.get().getToDate() == null ? coverage.get().getCheckedFrom()
+          : coverage.get().getToDate().plusDays(1);
+      String gapRange = RANGE_STARTS.entrySet().stream()
+          .filter(entry -> !entry.getValue().apply(today).isAfter(gapStart))
+          .map(Map.Entry::getKey)
+          .findFirst()
+          .orElse(range);
+      log.info("Fetching historical prices for {} from {} from IEX using range {}", key, gapStart,
+          gapRange);
+      store(key, iexClient.getHistoricalPriceForRange(key, gapRange), gapStart, lastCompleteDay);
+    }
+
+    return priceRpsy.findPrices(key, startOf(from), startOf(today));
+  }
+
+  /*
+   * Save the given prices, leaving out today's bar and any already stored, and return the prices
+   * given less today's bar. If checked days are given, the symbol's coverage is widened to include
+   * them and the prices, in the same transaction.
+   */
+  private List<IexHistoricalPrice> store(final String symbol,
+      final List<IexHistoricalPrice> prices, final LocalDate checkedFrom,
+      final LocalDate checkedTo) {
+    Instant today = startOf(LocalDate.now(clock));
+    List<IexHistoricalPrice> completed = prices.stream()
+        .filter(price -> price.getDate() != null && price.getDate().isBefore(today))
+        .collect(Collectors.toList());
+    // The symbol is part of the key, and IEX doesn't always include it in chart data
+    completed.forEach(price -> price.setSymbol(symbol));
+
+    try {
+      transactionTemplate.execute(status -> {
+        priceRpsy.saveAll(notYetStored(symbol, completed));
+        if (checkedFrom != null) {
+          IexHistoricalPriceCoverage coverage = coverageRpsy.findById(symbol)
+              .orElseGet(() -> IexHistoricalPriceCoverage.builder().symbol(symbol).build());
+          completed.forEach(price -> coverage.include(dayOf(price.getDate())));
+          coverage.check(checkedFrom, checkedTo);
+          coverageRpsy.save(coverage);
+        }
+        return null;
+      });
+    } catch (DataIntegrityViolationException e) {
+      // Another request saved some of the same prices first, so they are already stored
+      log.info("Historical prices for {} were stored by another request first", symbol, e);
+    }
+    return completed;
+  }
+
+  /*
+   * Leave out the prices that are already stored, found with a single query over the days they
+   * span.
+   */
+  private List<IexHistoricalPrice> notYetStored(final String symbol,
+      final List<IexHistoricalPrice> prices) {
+    if (prices.isEmpty()) {
+      return prices;
+    }
+
+    Instant first = prices.stream().map(IexHistoricalPrice::getDate).min(Instant::compareTo).get();
+    Instant last = prices.stream().map(IexHistoricalPrice::getDate).max(Instant::compareTo).get();
+    Set<Instant> stored =
+        new HashSet<>(priceRpsy.findDates(symbol, first, startOf(dayOf(last).plusDays(1))));
+    return prices.stream()
+        .filter(price -> !stored.contains(price.getDate()))
+        .collect(Collectors.toList());
+  }
+
+  private boolean isCovered(final String symbol, final LocalDate date) {
+    return coverageRpsy.findById(symbol).map(coverage -> coverage.covers(date)).orElse(false);
+  }
+
+  private static Instant startOf(final LocalDate date) {
+    return date.atStartOfDay(ZoneOffset.UTC).toInstant();
+  }
+
+  private static LocalDate dayOf(final Instant instant) {
+    return instant.atZone(ZoneOffset.UTC).toLocalDate();
+  }
+}
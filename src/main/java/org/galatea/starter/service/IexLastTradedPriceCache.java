@@ -0,0 +1,209 @@
+package org.galatea.starter.service;
+
+import com.google.common.collect.Iterables;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.IexLastTradedPrice;
+import org.galatea.starter.domain.IexLastTradedPriceResult;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps recently fetched last traded prices per symbol, and makes sure that concurrent requests for
+ * the same symbol share a single call to IEX rather than each making their own.
+ *
+ * <p>Prices live in the "lastTradedPrices" cache, whose time to live and size bound are set in the
+ * cache config file. A request only asks IEX for symbols that are neither cached nor already being
+ * fetched by another request; for the rest it waits on the call that is already in flight.
+ *
+ * <p>The symbols to fetch are split into chunks of iex.last-price.chunk-size, so that large
+ * watchlists don't run into URL length limits, and the chunks are fetched in parallel on the IEX
+ * executor. A chunk that fails or takes longer than iex.last-price.chunk-timeout-millis doesn't
+ * fail the whole request; its symbols are reported back as failed instead.
+ */
+@Slf4j
+@Component
+public class IexLastTradedPriceCache {
+
+  public static final String CACHE_NAME = "lastTradedPrices";
+
+  @NonNull
+  private final IexClient iexClient;
+
+  @NonNull
+  private final Cache prices;
+
+  @NonNull
+  private final Executor executor;
+
+  private final int chunkSize;
+
+  private final long chunkTimeoutMillis;
+
+  // The upstream call currently fetching each symbol, shared by every request that wants it
+  private final ConcurrentMap<String, CompletableFuture<IexLastTradedPrice>> inFlight =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Creates a cache that fetches prices it doesn't hold from the given client.
+   *
+   * @param iexClient the client used to fetch prices from IEX
+   * @param cacheManager the cache manager holding the "lastTradedPrices" cache
+   * @param executor the executor that chunks of symbols are fetched on
+   * @param chunkSize the most symbols fetched in one call to IEX
+   * @param chunkTimeoutMillis how long to wait for one chunk before reporting its symbols as failed
+   */
+  public IexLastTradedPriceCache(final IexClient iexClient, final CacheManager cacheManager,
+      @Qualifier("iexTaskExecutor") final Executor executor,
+      @Value("${iex.last-price.chunk-size:100}") final int chunkSize,
+      @Value("${iex.last-price.chunk-timeout-millis:5000}") final long chunkTimeoutMillis) {
+    this.iexClient = iexClient;
+    this.prices = Objects.requireNonNull(cacheManager.getCache(CACHE_NAME),
+        "No cache named " + CACHE_NAME + " is configured");
+    this.executor = executor;
+    this.chunkSize = chunkSize;
+    this.chunkTimeoutMillis = chunkTimeoutMillis;
+  }
+
+  /**
+   * Get the last traded price for each of the given symbols, in the order they were requested.
+   * Symbols that IEX has no price for are left out, as they are by IEX itself.
+   *
+   * @param symbols the symbols to get a last traded price for
+   * @return a future of the last traded price for each symbol that IEX knows about, and the
+   *     symbols that couldn't be fetched; completed once every chunk has been fetched or failed
+   */
+  public CompletableFuture<IexLastTradedPriceResult> getLastTradedPrices(
+      final List<String> symbols) {
+    // Keyed by the normalised symbol, in request order, to drop duplicate symbols
+    Map<String, CompletableFuture<IexLastTradedPrice>> results = new LinkedHashMap<>();
+    Map<String, CompletableFuture<IexLastTradedPrice>> toFetch = new LinkedHashMap<>();
+
+    for (String symbol : symbols) {
+      String key = symbol.toUpperCase(Locale.ROOT);
+      if (results.containsKey(key)) {
+        continue;
+      }
+
+      IexLastTradedPrice cached = prices.get(key, IexLastTradedPrice.class);
+      if (cached != null) {
+        results.put(key, CompletableFuture.completedFuture(cached));
+        continue;
+      }
+
+      CompletableFuture<IexLastTradedPrice> fetch = new CompletableFuture<>();
+      CompletableFuture<IexLastTradedPrice> existing = inFlight.putIfAbsent(key, fetch);
+      if (existing == null) {
+        toFetch.put(key, fetch);
+        results.put(key, fetch);
+      } else {
+        results.put(key, existing);
+      }
+    }
+
+    for (List<String> chunk : Iterables.partition(toFetch.keySet(), chunkSize)) {
+      Map<String, CompletableFuture<IexLastTradedPrice>> chunkFutures = new LinkedHashMap<>();
+      chunk.forEach(key -> chunkFutures.put(key, toFetch.get(key)));
+      fetch(chunkFutures);
+    }
+
+    // Nothing blocks while the chunks are fetched; the result is put together once they're done
+    return CompletableFuture.allOf(results.values().toArray(new CompletableFuture<?>[0]))
+        .handle((ignored, error) -> collect(results));
+  }
+
+  /*
+   * Gather up every requested price, separating the symbols that failed from the prices found. If
+   * every symbol failed there's nothing to return, so the error is thrown as a single call to IEX
+   * would have thrown it.
+   */
+  private IexLastTradedPriceResult collect(
+      final Map<String, CompletableFuture<IexLastTradedPrice>> results) {
+    List<IexLastTradedPrice> found = new ArrayList<>();
+    List<String> failedSymbols = new ArrayList<>();
+    RuntimeException firstError = null;
+
+    for (Map.Entry<String, CompletableFuture<IexLastTradedPrice>> result : results.entrySet()) {
+      try {
+        IexLastTradedPrice price = result.getValue().join();
+        if (price != null) {
+          found.add(price);
+        }
+      } catch (CompletionException e) {
+        failedSymbols.add(result.getKey());
+        if (firstError == null) {
+          firstError = e.getCause() instanceof RuntimeException
+              ? (RuntimeException) e.getCause() : e;
+        }
+      }
+    }
+
+    if (firstError != null && failedSymbols.size() == results.size()) {
+      throw firstError;
+    }
+    if (!failedSymbols.isEmpty()) {
+      log.warn("Unable to fetch last traded price for {} of {} symbol(s): {}",
+          failedSymbols.size(), results.size(), failedSymbols, firstError);
+    }
+    return IexLastTradedPriceResult.builder().prices(found).failedSymbols(failedSymbols).build();
+  }
+
+  /*
+   * Fetch one chunk of symbols from IEX on the executor. Once it's done, each price is cached and
+   * the futures this and any other waiting request are joined on are completed.
+   */
+  private void fetch(final Map<String, CompletableFuture<IexLastTradedPrice>> chunk) {
+    String[] symbols = chunk.keySet().toArray(new String[0]);
+    log.debug("Fetching last traded price for {} symbol(s) from IEX", symbols.length);
+    try {
+      // The timeout stops waiting on the chunk, but can't interrupt the HTTP call itself; that is
+      // bounded by the feign client's own read timeout
+      CompletableFuture
+          .supplyAsync(() -> iexClient.getLastTradedPriceForSymbols(symbols), executor)
+          .orTimeout(chunkTimeoutMillis, TimeUnit.MILLISECONDS)
+          .whenComplete((fetched, error) -> complete(chunk, fetched, error));
+    } catch (RejectedExecutionException e) {
+      complete(chunk, null, e);
+    }
+  }
+
+  private void complete(final Map<String, CompletableFuture<IexLastTradedPrice>> chunk,
+      final List<IexLastTradedPrice> fetched, final Throwable error) {
+    try {
+      if (error != null) {
+        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+        chunk.values().forEach(future -> future.completeExceptionally(cause));
+        return;
+      }
+
+      for (IexLastTradedPrice price : fetched) {
+        String key = price.getSymbol().toUpperCase(Locale.ROOT);
+        prices.put(key, price);
+        CompletableFuture<IexLastTradedPrice> future = chunk.get(key);
+        if (future != null) {
+          future.complete(price);
+        }
+      }
+      // IEX leaves out symbols it doesn't know, so nothing will be cached for those
+      chunk.values().forEach(future -> future.complete(null));
+    } finally {
+      chunk.forEach(inFlight::remove);
+    }
+  }
+}
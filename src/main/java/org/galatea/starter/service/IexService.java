@@ -4,12 +4,14 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.domain.IexHistoricalPrice;
-import org.galatea.starter.domain.IexLastTradedPrice;
+import org.galatea.starter.domain.IexLastTradedPriceResult;
 import org.galatea.starter.domain.IexSymbol;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
@@ -24,50 +26,81 @@ public class IexService {
   @NonNull
   private IexClient iexClient;
 
+  @NonNull
+  private IexLastTradedPriceCache lastTradedPriceCache;
+
+  @NonNull
+  private IexHistoricalPriceStore historicalPriceStore;
+
+  @NonNull
+  private IexSymbolUniverse symbolUniverse;
+
 
   /**
-   * Get all stock symbols from IEX.
+   * Get all stock symbols from IEX. Served from the in-memory symbol snapshot, which is refreshed
+   * from IEX in the background.
    *
    * @return a list of all Stock Symbols from IEX.
    */
   public List<IexSymbol> getAllSymbols() {
-    return iexClient.getAllSymbols();
+    return symbolUniverse.getSnapshot().getSymbols();
+  }
+
+  /**
+   * Get the current snapshot of IEX symbols, with its lookup indexes and serialized form.
+   *
+   * @return the current symbol snapshot.
+   */
+  public IexSymbolUniverse.Snapshot getSymbolSnapshot() {
+    return symbolUniverse.getSnapshot();
   }
 
   /**
-   * Get the last traded price for each Symbol that is passed in.
+   * Get the last traded price for each Symbol that is passed in. Recently fetched prices are
+   * served from a cache, and symbols already being fetched for another request aren't re-fetched.
+   * Large lists of symbols are split up and fetched from IEX in parallel.
    *
    * @param symbols the list of symbols to get a last traded price for.
-   * @return a list of last traded price objects for each Symbol that is passed in.
+   * @return a future of the last traded price objects for each Symbol that is passed in, along
+   *     with any symbols that couldn't be fetched.
    */
-  public List<IexLastTradedPrice> getLastTradedPriceForSymbols(final List<String> symbols) {
+  public CompletableFuture<IexLastTradedPriceResult> getLastTradedPriceForSymbols(
+      final List<String> symbols) {
     if (CollectionUtils.isEmpty(symbols)) {
-      return Collections.emptyList();
+      return CompletableFuture.completedFuture(IexLastTradedPriceResult.builder()
+          .prices(Collections.emptyList()).failedSymbols(Collections.emptyList()).build());
     } else {
-      return iexClient.getLastTradedPriceForSymbols(symbols.toArray(new String[0]));
+      return lastTradedPriceCache.getLastTradedPrices(symbols);
     }
   }
 
   /**
-   * Get historical pricing data for the given symbol on the given date
+   * Get historical pricing data for the given symbol on the given date. Prices already held in
+   * the local historical price store aren't fetched from IEX again.
    *
    * @param symbol the symbol to retrieve data about
    * @param date the date which should be queried
-   * @return historical pricing data for the given symbol on the given date
+   * @return a future of the historical pricing data for the given symbol on the given date
    */
-  public List<IexHistoricalPrice> getHistoricalPriceOnDate(final String symbol, final LocalDate date) {
-    return iexClient.getHistoricalPriceOnDate(symbol, date);
+  // Runs on the IEX executor, so the calling (e.g. servlet) thread isn't held while IEX responds
+  @Async("iexTaskExecutor")
+  public CompletableFuture<List<IexHistoricalPrice>> getHistoricalPriceOnDate(final String symbol,
+      final LocalDate date) {
+    return CompletableFuture.completedFuture(historicalPriceStore.getPriceOnDate(symbol, date));
   }
 
   /**
-   * Get historical pricing data for the given symbol and range
+   * Get historical pricing data for the given symbol and range. Only the days missing from the
+   * local historical price store are fetched from IEX.
    *
    * @param symbol the symbol to retrieve data about
    * @param range the range to query (max, 5y, 2y, 1y, ytd, 6m, 3m, 1m, 1mm, 5d, 5dm, date, dynamic)
-   * @return historical pricing data for the given symbol on the given date
+   * @return a future of the historical pricing data for the given symbol and range
    */
-  public List<IexHistoricalPrice> getHistoricalPriceForRange(final String symbol, final String range) {
-    return iexClient.getHistoricalPriceForRange(symbol, range);
+  @Async("iexTaskExecutor")
+  public CompletableFuture<List<IexHistoricalPrice>> getHistoricalPriceForRange(
+      final String symbol, final String range) {
+    return CompletableFuture.completedFuture(historicalPriceStore.getPricesForRange(symbol, range));
   }
 
 }
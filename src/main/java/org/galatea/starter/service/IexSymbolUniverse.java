@@ -0,0 +1,191 @@
+package org.galatea.starter.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.IexSymbol;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Holds the full list of IEX symbols in memory, so that symbol requests don't each fetch and
+ * deserialize the roughly 9,000 symbols IEX returns.
+ *
+ * <p>The list is loaded in the background at startup and refreshed every
+ * iex.symbols.refresh-millis. Each refresh builds a new, immutable snapshot (with its indexes and
+ * its serialized JSON) and swaps it in atomically, so readers never see a half-built snapshot. A
+ * failed refresh keeps the previous snapshot.
+ */
+@Slf4j
+@Component
+public class IexSymbolUniverse {
+
+  // Configured like the mapper MappingJackson2HttpMessageConverter builds, so the pre-serialized
+  // payload is the same JSON the controller would otherwise have produced
+  private static final ObjectMapper MAPPER = Jackson2ObjectMapperBuilder.json().build();
+
+  @NonNull
+  private final IexClient iexClient;
+
+  private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+  /**
+   * Creates a symbol universe that loads its symbols from IEX.
+   *
+   * @param iexClient the client used to fetch the symbols
+   */
+  public IexSymbolUniverse(final IexClient iexClient) {
+    this.iexClient = iexClient;
+  }
+
+  /**
+   * Get the current snapshot, loading it first if it hasn't been loaded yet.
+   */
+  public Snapshot getSnapshot() {
+    Snapshot current = snapshot.get();
+    if (current == null) {
+      synchronized (this) {
+        current = snapshot.get();
+        if (current == null) {
+          current = load();
+        }
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Reload the symbols from IEX and swap in a new snapshot if they have changed.
+   */
+  @Scheduled(initialDelay = 0, fixedDelayString = "${iex.symbols.refresh-millis:3600000}")
+  public void refresh() {
+    try {
+      load();
+    } catch (RuntimeException e) {
+      log.warn("Unable to refresh IEX symbols, keeping the current snapshot", e);
+    }
+  }
+
+  private Snapshot load() {
+    Snapshot loaded = new Snapshot(iexClient.getAllSymbols());
+    Snapshot previous = snapshot.get();
+    if (previous != null && previous.getEtag().equals(loaded.getEtag())) {
+      log.debug("IEX symbols unchanged, keeping snapshot {}", previous.getEtag());
+      return previous;
+    }
+
+    snapshot.set(loaded);
+    log.info("Loaded snapshot {} of {} IEX symbols", loaded.getEtag(), loaded.getSymbols().size());
+    return loaded;
+  }
+
+  /**
+   * An immutable view of the IEX symbols at one point in time, along with lookup indexes and the
+   * JSON the symbol endpoint serves.
+   */
+  public static class Snapshot {
+
+    @Getter
+    private final List<IexSymbol> symbols;
+
+    // Sorted by symbol, which also serves prefix searches
+    private final NavigableMap<String, IexSymbol> bySymbol;
+
+    private final Map<String, IexSymbol> byIexId;
+
+    private final Map<String, List<IexSymbol>> byType;
+
+    /**
+     * The symbols as a JSON array.
+     */
+    @Getter
+    private final byte[] json;
+
+    /**
+     * A strong ETag for the JSON, which changes whenever the symbols do.
+     */
+    @Getter
+    private final String etag;
+
+    Snapshot(final List<IexSymbol> symbols) {
+      this.symbols = Collections.unmodifiableList(symbols);
+      this.bySymbol = Collections.unmodifiableNavigableMap(symbols.stream()
+          .filter(symbol -> symbol.getSymbol() != null)
+          .collect(Collectors.toMap(IexSymbol::getSymbol, Function.identity(),
+              (first, second) -> first, TreeMap::new)));
+      this.byIexId = symbols.stream()
+          .filter(symbol -> symbol.getIexId() != null)
+          .collect(Collectors.toMap(IexSymbol::getIexId, Function.identity(),
+              (first, second) -> first));
+      this.byType = symbols.stream()
+          .filter(symbol -> symbol.getType() != null)
+          .collect(Collectors.groupingBy(IexSymbol::getType));
+      try {
+        this.json = MAPPER.writeValueAsBytes(symbols);
+      } catch (JsonProcessingException e) {
+        throw new IllegalStateException("Unable to serialize IEX symbols", e);
+      }
+      this.etag = "\"" + DigestUtils.md5DigestAsHex(json) + "\"";
+    }
+
+    /**
+     * Find the symbol with the given ticker (e.g. AAPL).
+     */
+    public Optional<IexSymbol> findBySymbol(final String symbol) {
+      return Optional.ofNullable(bySymbol.get(symbol));
+    }
+
+    /**
+     * Find the symbol with the given IEX id.
+     */
+    public Optional<IexSymbol> findByIexId(final String iexId) {
+      return Optional.ofNullable(byIexId.get(iexId));
+    }
+
+    /**
+     * Find the symbols matching all of the given filters, in symbol order. A null filter matches
+     * every symbol.
+     *
+     * @param prefix only symbols starting with this are returned
+     * @param type only symbols of this type (e.g. cs for common stock) are returned
+     * @param enabled only symbols with this enabled flag are returned
+     * @return the matching symbols
+     */
+    public List<IexSymbol> search(final String prefix, final String type, final Boolean enabled) {
+      Iterable<IexSymbol> candidates;
+      if (prefix != null) {
+        candidates = bySymbol.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values();
+      } else if (type != null) {
+        candidates = byType.getOrDefault(type, Collections.emptyList());
+      } else {
+        candidates = bySymbol.values();
+      }
+
+      List<IexSymbol> matches = new ArrayList<>();
+      for (IexSymbol symbol : candidates) {
+        if ((type == null || type.equals(symbol.getType()))
+            && (enabled == null || enabled == symbol.isEnabled())) {
+          matches.add(symbol);
+        }
+      }
+      matches.sort(Comparator.comparing(IexSymbol::getSymbol,
+          Comparator.nullsLast(Comparator.naturalOrder())));
+      return matches;
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package org.galatea.starter.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.ProcessedMessage;
+import org.galatea.starter.domain.rpsy.IProcessedMessageRpsy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps track of the JMS messages whose agreements have been settled, so that a message the broker
+ * redelivers (e.g. after a rolled back transaction or a failover) doesn't spawn its missions again.
+ *
+ * <p>Message ids are held in two places. The "processedMessages" cache is a bounded, time-windowed
+ * index that listeners check before doing any work on a message, so duplicates within the window
+ * are dropped with a single lookup. The ProcessedMessage table is the record of truth: its primary
+ * key stops a message from being recorded twice, and rows are kept for
+ * jms.idempotency.retention-minutes. A message is recorded in the same transaction that saves its
+ * missions, so either both are committed or neither is.
+ */
+@Slf4j
+@Component
+public class ProcessedMessageIndex {
+
+  public static final String CACHE_NAME = "processedMessages";
+
+  @NonNull
+  private final IProcessedMessageRpsy processedMessageRpsy;
+
+  @NonNull
+  private final Cache processed;
+
+  private final Duration retention;
+
+  /**
+   * Creates an index backed by the given repository and cache.
+   *
+   * @param processedMessageRpsy the repository processed messages are recorded in
+   * @param cacheManager the cache manager holding the "processedMessages" cache
+   * @param retentionMinutes how long processed messages are kept in the repository
+   */
+  public ProcessedMessageIndex(final IProcessedMessageRpsy processedMessageRpsy,
+      final CacheManager cacheManager,
+      @Value("${jms.idempotency.retention-minutes:1440}") final long retentionMinutes) {
+    this.processedMessageRpsy = processedMessageRpsy;
+    this.processed = Objects.requireNonNull(cacheManager.getCache(CACHE_NAME),
+        "No cache named " + CACHE_NAME + " is configured");
+    this.retention = Duration.ofMinutes(retentionMinutes);
+  }
+
+  /**
+   * Whether the message with the given id has already been processed.
+   *
+   * @param messageId the JMS message id
+   * @param checkStore whether to look in the repository if the message isn't in the in-memory
+   *     index. Only a redelivered message can have been processed already, so there's no need to
+   *     go to the database for one being delivered for the first time.
+   */
+  public boolean isProcessed(final String messageId, final boolean checkStore) {
+    if (processed.get(messageId) != null) {
+      return true;
+    }
+
+    if (checkStore && processedMessageRpsy.existsById(messageId)) {
+      processed.put(messageId, Boolean.TRUE);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Record the given messages as processed. Call this in the transaction that settles the
+   * messages' agreements, and call index once it has committed.
+   *
+   * <p>The messages are inserted without checking for them first: the primary key rejects a
+   * message that has already been recorded, by this instance or any other, when the transaction
+   * is flushed, and that rolls back the settlement along with it.
+   *
+   * @param messageIds the ids of the messages to record
+   * @throws DataIntegrityViolationException on flush or commit, if any of the messages has already
+   *     been recorded
+   */
+  public void record(final Collection<String> messageIds) {
+    Instant now = Instant.now();
+    processedMessageRpsy.saveAll(messageIds.stream()
+        .map(id -> ProcessedMessage.builder().messageId(id).processedAt(now).build())
+        .collect(Collectors.toList()));
+  }
+
+  /**
+   * Add the given messages to the in-memory index, once they have been recorded.
+   *
+   * @param messageIds the ids of the recorded messages
+   */
+  public void index(final Collection<String> messageIds) {
+    messageIds.forEach(id -> processed.put(id, Boolean.TRUE));
+  }
+
+  /**
+   * Delete recorded messages that are older than the retention period. By then the broker has long
+   * since given up redelivering them.
+   */
+  @Scheduled(fixedDelayString = "${jms.idempotency.purge-interval-millis:600000}")
+  public void purge() {
+    int purged = processedMessageRpsy.deleteProcessedBefore(Instant.now().minus(retention));
+    log.debug("Purged {} processed message(s) older than {}", purged, retention);
+  }
+}
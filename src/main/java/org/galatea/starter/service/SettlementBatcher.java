@@ -0,0 +1,316 @@
+package org.galatea.starter.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.utils.jms.ProcessingLatency;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Gathers trade agreements handed over by the JMS listeners into micro-batches, so that many small
+ * messages are settled by a single call to SettlementService.spawnMissions (one transaction and one
+ * JDBC-batched insert) instead of one call per message.
+ *
+ * <p>A batch is flushed once it holds jms.batch.max-size agreements or once
+ * jms.batch.max-wait-millis has passed since its first agreement arrived, whichever comes first.
+ * Callers block until the batch holding their agreements has been committed, or for at most
+ * jms.batch.settle-timeout-millis. Since the listener container only acknowledges a message once
+ * the listener method returns, acknowledgement is deferred until the batch commits, and a failed
+ * or timed out batch puts its messages back on the queue. Each caller gets back the ids of the
+ * missions spawned for its own agreements, not the whole batch's.
+ *
+ * <p>Each listener thread waits on its own batch, so the number of messages that can share a batch
+ * is bounded by the number of listener threads. While batching is enabled, the listeners therefore
+ * run with the concurrency given by getListenerConcurrency, which lets each queue's listeners scale
+ * up to jms.batch.max-size threads, so that a batch of single-agreement messages can fill up.
+ */
+@Slf4j
+@Component
+public class SettlementBatcher {
+
+  @NonNull
+  private final SettlementService settlementService;
+
+  @NonNull
+  private final ProcessingLatency latency;
+
+  private final boolean enabled;
+
+  private final int maxBatchSize;
+
+  private final long maxWaitNanos;
+
+  private final long settleTimeoutMillis;
+
+  private final String listenerConcurrency;
+
+  private final BlockingQueue<PendingAgreements> buffer;
+
+  private volatile boolean running;
+
+  private Thread flusher;
+
+  /**
+   * Creates a batcher that settles agreements through the given settlement service.
+   *
+   * @param settlementService the service used to spawn missions for each batch
+   * @param latency records how long spawning missions takes per agreement
+   * @param enabled whether batching is switched on; if not, agreements are settled immediately
+   * @param maxBatchSize the number of agreements that triggers a flush
+   * @param maxWaitMillis the longest time an agreement waits for its batch to fill up
+   * @param bufferCapacity the number of messages that may wait for a flush at once
+   * @param settleTimeoutMillis the longest time a caller waits for its batch to be settled
+   * @param listenerConcurrency the concurrency the JMS listeners are configured with, either a
+   *     number of threads or a lower-upper range
+   */
+  public SettlementBatcher(final SettlementService settlementService,
+      final ProcessingLatency latency,
+      @Value("${jms.batch.enabled:false}") final boolean enabled,
+      @Value("${jms.batch.max-size:500}") final int maxBatchSize,
+      @Value("${jms.batch.max-wait-millis:50}") final long maxWaitMillis,
+      @Value("${jms.batch.buffer-capacity:1000}") final int bufferCapacity,
+      @Value("${jms.batch.settle-timeout-millis:30000}") final long settleTimeoutMillis,
+      @Value("${jms.listener-concurrency:1}") final String listenerConcurrency) {
+    this.settlementService = settlementService;
+    this.latency = latency;
+    this.enabled = enabled;
+    this.maxBatchSize = maxBatchSize;
+    this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    this.buffer = new ArrayBlockingQueue<>(bufferCapacity);
+    this.settleTimeoutMillis = settleTimeoutMillis;
+    this.listenerConcurrency = listenerConcurrency;
+  }
+
+  /**
+   * The concurrency the JMS listeners should run with. That's jms.listener-concurrency, except that
+   * while batching is enabled its upper bound is raised to at least the max batch size: every
+   * message in a batch holds a listener thread until the batch commits, so fewer threads would
+   * flush every batch on its time window before it could fill.
+   */
+  public String getListenerConcurrency() {
+    if (!enabled) {
+      return listenerConcurrency;
+    }
+
+    String concurrency = listenerConcurrency.trim();
+    int separator = concurrency.indexOf('-');
+    String lower = separator < 0 ? concurrency : concurrency.substring(0, separator).trim();
+    int upper = Integer.parseInt(concurrency.substring(separator + 1).trim());
+    return lower + "-" + Math.max(upper, maxBatchSize);
+  }
+
+  /**
+   * Starts the thread that flushes batches, if batching is enabled.
+   */
+  @PostConstruct
+  public void start() {
+    if (!enabled) {
+      log.info("JMS settlement batching is disabled");
+      return;
+    }
+
+    log.info("Starting JMS settlement batching with max size {}, max wait {}ms and listener"
+        + " concurrency {}", maxBatchSize, TimeUnit.NANOSECONDS.toMillis(maxWaitNanos),
+        getListenerConcurrency());
+    running = true;
+    flusher = new Thread(this::flushLoop, "settlement-batcher");
+    flusher.setDaemon(true);
+    flusher.start();
+  }
+
+  /**
+   * Stops the flushing thread once everything already in the buffer has been settled.
+   */
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    running = false;
+    if (flusher != null) {
+      flusher.join(TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) + 5000);
+    }
+  }
+
+  /**
+   * Settle the given agreements, either straight away or as part of the next batch.
+   *
+   * @param agreements the agreements to spawn missions for
+   * @return the ids of the missions created for the agreements
+   */
+  public Set<Long> settle(final List<TradeAgreement> agreements) {
+    return settle(agreements, null);
+  }
+
+  /**
+   * Settle the given agreements, taken off the JMS message with the given id, either straight away
+   * or as part of the next batch. The message is recorded as processed in the transaction that
+   * settles it (see ProcessedMessageIndex).
+   *
+   * @param agreements the agreements to spawn missions for
+   * @param messageId the id of the message the agreements were taken off, or null if there is none
+   * @return the ids of the missions created for the agreements
+   * @throws IllegalStateException if the agreements weren't settled within the settle timeout; the
+   *     batch holding them may still commit later, in which case a redelivery of the message is
+   *     dropped as already processed
+   */
+  public Set<Long> settle(final List<TradeAgreement> agreements, final String messageId) {
+    if (!enabled) {
+      return spawn(agreements, messageIdsOf(Collections.singletonList(messageId)));
+    }
+
+    PendingAgreements pending = new PendingAgreements(agreements, messageId);
+    try {
+      buffer.put(pending);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for space in the batch buffer", e);
+    }
+
+    try {
+      return pending.result.get(settleTimeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("Failed to settle the batch", e.getCause());
+    } catch (TimeoutException e) {
+      // Don't settle agreements whose listener has given up on them, if they're still waiting
+      buffer.remove(pending);
+      throw new IllegalStateException("Agreements from message " + messageId
+          + " were not settled within " + settleTimeoutMillis + "ms", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      buffer.remove(pending);
+      throw new IllegalStateException("Interrupted while waiting for the batch to be settled", e);
+    }
+  }
+
+  private void flushLoop() {
+    List<PendingAgreements> batch = new ArrayList<>();
+
+    while (running || !buffer.isEmpty()) {
+      try {
+        PendingAgreements first = buffer.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+
+        batch.add(first);
+        int batchSize = first.agreements.size();
+        long deadline = System.nanoTime() + maxWaitNanos;
+
+        // Keep taking from the buffer until the batch is full or its time window has closed
+        while (batchSize < maxBatchSize) {
+          PendingAgreements next = buffer.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+          if (next == null) {
+            break;
+          }
+          batch.add(next);
+          batchSize += next.agreements.size();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        running = false;
+      }
+
+      if (!batch.isEmpty()) {
+        flush(batch);
+        batch.clear();
+      }
+    }
+  }
+
+  private void flush(final List<PendingAgreements> batch) {
+    List<TradeAgreement> agreements = batch.stream()
+        .flatMap(pending -> pending.agreements.stream())
+        .collect(Collectors.toList());
+    log.info("Flushing batch of {} agreement(s) from {} message(s)", agreements.size(),
+        batch.size());
+
+    try {
+      Set<Long> missionIds = spawn(agreements, messageIdsOf(batch.stream()
+          .map(pending -> pending.messageId).collect(Collectors.toList())));
+
+      // Mission ids come back in the order of the agreements, one per agreement, so each message
+      // gets the ids for the slice of the batch its agreements made up
+      Iterator<Long> ids = missionIds.iterator();
+      for (PendingAgreements pending : batch) {
+        Set<Long> pendingIds = new LinkedHashSet<>();
+        for (int i = 0; i < pending.agreements.size() && ids.hasNext(); i++) {
+          pendingIds.add(ids.next());
+        }
+        pending.result.complete(pendingIds);
+      }
+    } catch (RuntimeException e) {
+      if (batch.size() == 1) {
+        batch.get(0).result.completeExceptionally(e);
+        return;
+      }
+
+      // One bad message (e.g. one that fails validation) shouldn't send every other message in the
+      // batch back to the queue, so settle them one at a time to find out which ones failed
+      log.warn("Batch of {} message(s) failed, settling them individually", batch.size(), e);
+      batch.forEach(this::settleIndividually);
+    }
+  }
+
+  private void settleIndividually(final PendingAgreements pending) {
+    try {
+      pending.result.complete(spawn(pending.agreements,
+          messageIdsOf(Collections.singletonList(pending.messageId))));
+    } catch (RuntimeException e) {
+      pending.result.completeExceptionally(e);
+    }
+  }
+
+  private Set<Long> spawn(final List<TradeAgreement> agreements, final List<String> messageIds) {
+    // Only the time spent settling counts towards the latency, not the time spent waiting for a
+    // batch to fill up, and it's recorded per agreement so that large messages don't skew it
+    long start = System.nanoTime();
+    try {
+      if (messageIds.isEmpty()) {
+        return settlementService.spawnMissions(agreements);
+      }
+      return settlementService.spawnMissions(agreements, messageIds);
+    } finally {
+      latency.record(System.nanoTime() - start, agreements.size());
+    }
+  }
+
+  private static List<String> messageIdsOf(final List<String> messageIds) {
+    return messageIds.stream().filter(Objects::nonNull).collect(Collectors.toList());
+  }
+
+  /**
+   * The agreements from one message and the message's id, along with the future its listener thread
+   * is waiting on.
+   */
+  private static class PendingAgreements {
+
+    private final List<TradeAgreement> agreements;
+
+    private final String messageId;
+
+    private final CompletableFuture<Set<Long>> result = new CompletableFuture<>();
+
+    PendingAgreements(final List<TradeAgreement> agreements, final String messageId) {
+      this.agreements = agreements;
+      this.messageId = messageId;
+    }
+  }
+}
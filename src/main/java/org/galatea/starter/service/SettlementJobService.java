@@ -0,0 +1,131 @@
+package org.galatea.starter.service;
+
+import com.google.common.collect.Lists;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import javax.validation.Valid;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.SettlementJob;
+import org.galatea.starter.domain.TradeAgreement;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * Settles trade agreements in the background, so that a large settlement request can be accepted
+ * straight away rather than held open until every mission has been saved.
+ *
+ * <p>Jobs run on the settlement job executor, whose queue is bounded: once it is full, further
+ * submissions are rejected instead of queueing up work the application can't keep up with. Each
+ * job settles its agreements settlement.jobs.chunk-size at a time, so that its progress can be
+ * followed. Jobs are kept in the "settlementJobs" cache, which sets how long their status can be
+ * looked up for. A job is put back in the cache each time it makes progress, so the cache's time
+ * to live counts from a job's latest update rather than from its submission, and a job that runs
+ * for longer than that doesn't disappear while it's still running.
+ */
+@Slf4j
+@Validated
+@Service
+public class SettlementJobService {
+
+  public static final String CACHE_NAME = "settlementJobs";
+
+  @NonNull
+  private final SettlementService settlementService;
+
+  @NonNull
+  private final Executor executor;
+
+  @NonNull
+  private final Cache jobs;
+
+  private final int chunkSize;
+
+  /**
+   * Creates a job service that settles agreements through the given settlement service.
+   *
+   * @param settlementService the service used to spawn missions for each chunk of agreements
+   * @param executor the executor that jobs run on
+   * @param cacheManager the cache manager holding the "settlementJobs" cache
+   * @param chunkSize the number of agreements settled at a time
+   */
+  public SettlementJobService(final SettlementService settlementService,
+      @Qualifier("settlementJobExecutor") final Executor executor,
+      final CacheManager cacheManager,
+      @Value("${settlement.jobs.chunk-size:1000}") final int chunkSize) {
+    this.settlementService = settlementService;
+    this.executor = executor;
+    this.jobs = Objects.requireNonNull(cacheManager.getCache(CACHE_NAME),
+        "No cache named " + CACHE_NAME + " is configured");
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Queue the given agreements to be settled in the background. The agreements are validated
+   * before the job is queued.
+   *
+   * @param agreements the agreements to spawn missions for
+   * @return the queued job
+   * @throws TaskRejectedException if there's no room for the job in the executor's queue
+   */
+  public SettlementJob submit(@Valid final List<TradeAgreement> agreements) {
+    SettlementJob job = new SettlementJob(UUID.randomUUID().toString(), agreements.size());
+    jobs.put(job.getId(), job);
+
+    try {
+      executor.execute(() -> run(job, agreements));
+    } catch (TaskRejectedException e) {
+      jobs.evict(job.getId());
+      throw e;
+    }
+
+    log.info("Queued settlement job {} for {} agreement(s)", job.getId(), agreements.size());
+    return job;
+  }
+
+  /**
+   * Find the job with the given id.
+   *
+   * @param id the id of the job
+   * @return the job, or empty if there is no job with that id (or it has expired)
+   */
+  public Optional<SettlementJob> findJob(final String id) {
+    return Optional.ofNullable(jobs.get(id, SettlementJob.class));
+  }
+
+  private void run(final SettlementJob job, final List<TradeAgreement> agreements) {
+    job.started();
+    touch(job);
+    try {
+      for (List<TradeAgreement> chunk : Lists.partition(agreements, chunkSize)) {
+        job.settled(chunk.size(), settlementService.spawnMissions(chunk));
+        touch(job);
+      }
+      job.completed();
+      log.info("Settlement job {} spawned {} mission(s)", job.getId(),
+          job.getMissionIds().size());
+    } catch (RuntimeException e) {
+      log.error("Settlement job {} failed after {} of {} agreement(s)", job.getId(),
+          job.getSettledAgreementCount(), job.getAgreementCount(), e);
+      // The exception is kept rather than its message, so that it's reported the same way as it
+      // would be to a synchronous request (see ApiErrorMapper)
+      job.failed(e);
+    }
+    touch(job);
+  }
+
+  /*
+   * Put the job back in the cache, restarting its time to live.
+   */
+  private void touch(final SettlementJob job) {
+    jobs.put(job.getId(), job);
+  }
+}
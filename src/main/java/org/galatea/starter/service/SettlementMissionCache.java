@@ -0,0 +1,128 @@
+package org.galatea.starter.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.ehcache.Ehcache;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+/**
+ * Write-through and read-ahead access to the "missions" cache for the bulk repository calls, which
+ * the cache annotations on ISettlementMissionRpsy can only cover one mission at a time.
+ *
+ * <p>Missions saved in bulk are put straight into the cache, so that the reads which usually follow
+ * a settlement are served without going back to the database. Bulk reads take whatever they can
+ * from the cache and load the rest in a single query, caching them on the way out.
+ */
+@Slf4j
+@Component
+public class SettlementMissionCache {
+
+  public static final String CACHE_NAME = "missions";
+
+  @NonNull
+  private final ISettlementMissionRpsy missionrpsy;
+
+  @NonNull
+  private final Cache missions;
+
+  /**
+   * Creates a cache that reads and writes missions through the given repository.
+   *
+   * @param missionrpsy the repository missions are saved to and loaded from
+   * @param cacheManager the cache manager holding the "missions" cache
+   */
+  public SettlementMissionCache(final ISettlementMissionRpsy missionrpsy,
+      final CacheManager cacheManager) {
+    this.missionrpsy = missionrpsy;
+    this.missions = Objects.requireNonNull(cacheManager.getCache(CACHE_NAME),
+        "No cache named " + CACHE_NAME + " is configured");
+  }
+
+  /**
+   * Save the given missions in bulk and put each saved mission in the cache.
+   *
+   * @param toSave the missions to save
+   * @return the saved missions, with their ids and versions set
+   */
+  public List<SettlementMission> saveAll(final Iterable<SettlementMission> toSave) {
+    List<SettlementMission> saved = new ArrayList<>();
+    missionrpsy.saveAll(toSave).forEach(saved::add);
+    putAll(saved);
+    return saved;
+  }
+
+  /**
+   * Put the given missions in the cache, replacing any cached copies. Call this once the missions
+   * have been committed.
+   *
+   * @param saved the missions to cache
+   */
+  public void putAll(final Iterable<SettlementMission> saved) {
+    saved.forEach(mission -> missions.put(mission.getId(), mission));
+  }
+
+  /**
+   * Evict the missions with the given ids from the cache in one go.
+   *
+   * @param ids the ids of the missions to evict
+   */
+  public void evictAll(final Collection<Long> ids) {
+    Object nativeCache = missions.getNativeCache();
+    if (nativeCache instanceof Ehcache) {
+      // A single call into ehcache rather than one per mission
+      ((Ehcache) nativeCache).removeAll(ids);
+    } else {
+      ids.forEach(missions::evict);
+    }
+  }
+
+  /**
+   * Find the missions with the given ids, in the order the ids are given. Ids with no mission are
+   * left out, as they are by CrudRepository.findAllById.
+   *
+   * @param ids the ids of the missions to find
+   * @return the missions found
+   */
+  public List<SettlementMission> findAllById(final Iterable<Long> ids) {
+    // Keyed by id, in request order, to drop duplicate ids
+    Map<Long, SettlementMission> found = new LinkedHashMap<>();
+    Set<Long> misses = new LinkedHashSet<>();
+
+    for (Long id : ids) {
+      if (found.containsKey(id)) {
+        continue;
+      }
+      // A mission findById didn't find is cached as null; look for it again in case it has since
+      // been created
+      SettlementMission cached = missions.get(id, SettlementMission.class);
+      found.put(id, cached);
+      if (cached == null) {
+        misses.add(id);
+      }
+    }
+
+    if (!misses.isEmpty()) {
+      log.debug("Loading {} of {} mission(s) missing from the cache", misses.size(), found.size());
+      for (SettlementMission loaded : missionrpsy.findAllById(new ArrayList<>(misses))) {
+        missions.put(loaded.getId(), loaded);
+        found.put(loaded.getId(), loaded);
+      }
+    }
+
+    List<SettlementMission> result = new ArrayList<>(found.size());
+    found.values().stream().filter(Objects::nonNull).forEach(result::add);
+    return result;
+  }
+}
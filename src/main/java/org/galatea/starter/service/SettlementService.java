@@ -2,22 +2,44 @@ package org.galatea.starter.service;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
+import java.util.stream.Stream;
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import javax.validation.Valid;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.aspect4log.Log;
 import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.SettlementMissionBatchResult;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
 import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.validation.annotation.Validated;
 
 @RequiredArgsConstructor
@@ -27,34 +49,162 @@ import org.springframework.validation.annotation.Validated;
 @Service
 public class SettlementService {
 
+  // Missions written per transaction by the bulk update and delete; each chunk is sent as JDBC
+  // batches of hibernate.jdbc.batch_size statements
+  private static final int BULK_CHUNK_SIZE = 500;
+
   @NonNull
   ISettlementMissionRpsy missionrpsy;
 
   @NonNull
   IAgreementTransformer agreementTransformer;
 
+  @NonNull
+  SettlementMissionCache missionCache;
+
+  @NonNull
+  TransactionTemplate transactionTemplate;
+
+  @NonNull
+  ProcessedMessageIndex processedMessages;
+
+  @NonNull
+  ForkJoinPool settlementForkJoinPool;
+
+  // Requests with at least this many agreements have them transformed in parallel; 0 to transform
+  // every request on the calling thread
+  @Value("${settlement.parallel.threshold:0}")
+  private int parallelThreshold;
+
+  // JDBC batches of hibernate.jdbc.batch_size missions written per chunk in parallel mode
+  @Value("${settlement.parallel.batches-per-chunk:1}")
+  private int parallelBatchesPerChunk;
+
+  // Agreements transformed per fork-join task, and missions per saveAll call, in parallel mode
+  private int parallelChunkSize;
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  /**
+   * Size the chunks of a parallel request to whole JDBC batches, so that flushing a chunk sends
+   * full batches of inserts.
+   */
+  @PostConstruct
+  public void initParallelChunkSize() {
+    Object batchSize = entityManager.getEntityManagerFactory().getProperties()
+        .get(AvailableSettings.STATEMENT_BATCH_SIZE);
+    int statementsPerBatch = batchSize == null ? 1 : Math.max(1,
+        Integer.parseInt(batchSize.toString().trim()));
+    parallelChunkSize = statementsPerBatch * Math.max(1, parallelBatchesPerChunk);
+    log.info("Parallel settlement saves chunks of {} mission(s)", parallelChunkSize);
+  }
+
   /**
    * Create missions based on the agreements provided.
    *
    * @param agreements the agreements used to generate missions
-   * @return the ids of the missions that were created
+   * @return the ids of the missions that were created, in the order of the agreements
    */
   public Set<Long> spawnMissions(@Valid final List<TradeAgreement> agreements) {
 
-    // Map each agreement to a mission, collect to a list, and then same in bulk
-    Iterable<SettlementMission> savedMissions = missionrpsy.saveAll(agreements.stream()
-        .map(agr -> agreementTransformer.transform(agr)).collect(Collectors.toList()));
+    List<SettlementMission> savedMissions;
+    if (isParallel(agreements)) {
+      // A large request is saved chunk by chunk, but in one transaction so that it still succeeds
+      // or fails as a whole
+      savedMissions = transactionTemplate.execute(status -> transformAndSave(agreements));
+      missionCache.putAll(savedMissions);
+    } else {
+      // Map each agreement to a mission, collect to a list, and then save in bulk. The saved
+      // missions are cached too, ready for the reads that usually follow a settlement
+      savedMissions = missionCache.saveAll(transform(agreements));
+    }
     log.debug("The following missions were saved: {}", savedMissions);
 
-    // We have to do all of this StreamSupport crap since the repository returns an iterable instead
-    // of a normal collection
-    Set<Long> idSet = StreamSupport.stream(savedMissions.spliterator(), false)
-        .map(SettlementMission::getId).collect(Collectors.toSet());
+    Set<Long> idSet = savedMissions.stream()
+        .map(SettlementMission::getId).collect(Collectors.toCollection(LinkedHashSet::new));
     log.info("Returning {} mission id(s)", idSet.size());
 
     return idSet;
   }
 
+  /**
+   * Create missions based on the agreements taken off the given JMS messages, recording the
+   * messages as processed in the same transaction.
+   *
+   * @param agreements the agreements used to generate missions
+   * @param messageIds the ids of the messages the agreements were taken off
+   * @return the ids of the missions that were created, in the order of the agreements
+   * @throws DataIntegrityViolationException if any of the messages has already been processed, in
+   *     which case no missions are created
+   */
+  public Set<Long> spawnMissions(@Valid final List<TradeAgreement> agreements,
+      final Collection<String> messageIds) {
+    if (messageIds.isEmpty()) {
+      return spawnMissions(agreements);
+    }
+
+    List<SettlementMission> savedMissions = transactionTemplate.execute(status -> {
+      processedMessages.record(messageIds);
+      return transformAndSave(agreements);
+    });
+    log.debug("The following missions were saved: {}", savedMissions);
+
+    // Only once committed, so that a rolled back message is neither cached nor taken for processed
+    missionCache.putAll(savedMissions);
+    processedMessages.index(messageIds);
+
+    Set<Long> idSet = savedMissions.stream()
+        .map(SettlementMission::getId).collect(Collectors.toCollection(LinkedHashSet::new));
+    log.info("Returning {} mission id(s) for {} message(s)", idSet.size(), messageIds.size());
+
+    return idSet;
+  }
+
+  private boolean isParallel(final List<TradeAgreement> agreements) {
+    return parallelThreshold > 0 && agreements.size() >= parallelThreshold;
+  }
+
+  private List<SettlementMission> transform(final List<TradeAgreement> agreements) {
+    return agreements.stream().map(agr -> agreementTransformer.transform(agr))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Transform the given agreements to missions and save them, in the caller's transaction.
+   *
+   * <p>The agreements of a large request are split into chunks which are transformed in parallel
+   * on the settlement fork-join pool. Each chunk is saved and flushed as soon as it has been
+   * transformed, in the order of the agreements, so writing the first chunks overlaps with
+   * transforming the rest. The persistence context is cleared after each flush, so that it holds
+   * at most one chunk of missions however large the request.
+   */
+  private List<SettlementMission> transformAndSave(final List<TradeAgreement> agreements) {
+    List<SettlementMission> saved = new ArrayList<>(agreements.size());
+    if (!isParallel(agreements)) {
+      missionrpsy.saveAll(transform(agreements)).forEach(saved::add);
+      return saved;
+    }
+
+    List<ForkJoinTask<List<SettlementMission>>> chunks =
+        Lists.partition(agreements, parallelChunkSize).stream()
+            .map(chunk -> settlementForkJoinPool.submit(() -> transform(chunk)))
+            .collect(Collectors.toList());
+    try {
+      for (ForkJoinTask<List<SettlementMission>> chunk : chunks) {
+        missionrpsy.saveAll(chunk.join()).forEach(saved::add);
+        entityManager.flush();
+        entityManager.clear();
+      }
+    } finally {
+      // Chunks still waiting to be transformed are of no use if a save failed
+      chunks.forEach(chunk -> chunk.cancel(false));
+    }
+    log.debug("Transformed and saved {} agreement(s) in {} chunk(s)", agreements.size(),
+        chunks.size());
+    return saved;
+  }
+
 
   /**
    * Retrieve a previously-generated settlement mission from the database.
@@ -74,9 +224,10 @@ public class SettlementService {
   public List<SettlementMission> findMissions(final List<Long> ids) {
     log.info("Retrieving settlement missions with ids: {}", ids);
 
-    List<SettlementMission> retrievedMissions = Lists.newArrayList(missionrpsy.findAllById(ids));
+    // Cached missions are served from the cache, and the rest loaded in a single query
+    List<SettlementMission> retrievedMissions = missionCache.findAllById(ids);
 
-    // CrudRepository.findAll(Iterable ids) succeeds even if some provided IDs aren't found, so
+    // Like CrudRepository.findAllById, this succeeds even if some provided IDs aren't found, so
     // if we want to alert on any not-found IDs we have to manually check
     Set<Long> retrievedMissionIds = retrievedMissions.stream()
         .map(SettlementMission::getId)
@@ -89,6 +240,24 @@ public class SettlementService {
     return retrievedMissions;
   }
 
+  /**
+   * Lazily retrieve missions in id order, one page at a time, so that callers can stream through
+   * any number of missions without holding them all in memory.
+   *
+   * @param depot only return missions for this depot, or missions for every depot if null
+   * @param fromId the lowest mission id to return, or null to start from the first mission
+   * @param toId the highest mission id to return, or null to carry on to the last mission
+   * @param pageSize the number of missions to load from the database at a time
+   */
+  public Iterable<SettlementMission> streamMissions(final String depot, final Long fromId,
+      final Long toId, final int pageSize) {
+    log.info("Streaming settlement missions for depot {} with ids from {} to {}", depot, fromId,
+        toId);
+    long afterId = fromId == null ? Long.MIN_VALUE : fromId - 1;
+    long lastId = toId == null ? Long.MAX_VALUE : toId;
+    return () -> new MissionPageIterator(depot, afterId, lastId, pageSize);
+  }
+
   /**
    * Update the mission with the given ID.
    *
@@ -123,4 +292,181 @@ public class SettlementService {
     missionrpsy.deleteById(id);
     log.info("Mission with id '{}' was deleted", id);
   }
+
+  /**
+   * Update many missions at once. The missions are written a chunk at a time, each chunk in one
+   * transaction and JDBC-batched. Every mission is checked against the stored version first, so a
+   * mission that is missing or out of date is reported back on its own instead of failing the
+   * rest of its chunk.
+   *
+   * @param missions the missions to update, each with its id and the version it was read at
+   * @return the ids of the missions updated, and the reason each of the others wasn't
+   */
+  public SettlementMissionBatchResult updateMissions(
+      @Valid final List<SettlementMission> missions) {
+    log.info("Updating {} settlement mission(s)", missions.size());
+    SettlementMissionBatchResult.SettlementMissionBatchResultBuilder result =
+        SettlementMissionBatchResult.builder();
+    for (List<SettlementMission> chunk : Lists.partition(missions, BULK_CHUNK_SIZE)) {
+      updateChunk(chunk, result);
+    }
+    return result.build();
+  }
+
+  /**
+   * Delete many missions at once, a chunk at a time, each chunk in one transaction and
+   * JDBC-batched. Ids with no mission are reported back on their own instead of failing the rest
+   * of their chunk. The deleted missions are evicted from the cache once their chunk commits.
+   *
+   * @param ids the ids of the missions to delete
+   * @return the ids of the missions deleted, and the reason each of the others wasn't
+   */
+  public SettlementMissionBatchResult deleteMissions(final List<Long> ids) {
+    log.info("Deleting {} settlement mission(s)", ids.size());
+    SettlementMissionBatchResult.SettlementMissionBatchResultBuilder result =
+        SettlementMissionBatchResult.builder();
+    for (List<Long> chunk : Lists.partition(ids, BULK_CHUNK_SIZE)) {
+      deleteChunk(chunk, result);
+    }
+    return result.build();
+  }
+
+  private void updateChunk(final List<SettlementMission> chunk,
+      final SettlementMissionBatchResult.SettlementMissionBatchResultBuilder result) {
+    Map<Long, RuntimeException> failures = new LinkedHashMap<>();
+    List<SettlementMission> updated;
+    try {
+      updated = transactionTemplate.execute(status -> {
+        Map<Long, SettlementMission> stored =
+            findAllById(chunk.stream().map(SettlementMission::getId));
+
+        List<SettlementMission> toSave = new ArrayList<>();
+        for (SettlementMission mission : chunk) {
+          SettlementMission current = stored.get(mission.getId());
+          if (current == null) {
+            failures.put(mission.getId(), notFound(mission.getId()));
+          } else if (!current.getVersion().equals(mission.getVersion())) {
+            failures.put(mission.getId(),
+                new ObjectOptimisticLockingFailureException(SettlementMission.class,
+                    mission.getId()));
+          } else {
+            toSave.add(mission);
+          }
+        }
+        // The stored missions are already loaded, so this is just the batched updates on commit
+        return Lists.newArrayList(missionrpsy.saveAll(toSave));
+      });
+    } catch (ObjectOptimisticLockingFailureException e) {
+      if (chunk.size() == 1) {
+        result.failure(chunk.get(0).getId(), e);
+        return;
+      }
+      // A mission changed between the version check and the commit, which rolled back the whole
+      // chunk. Go through it one mission at a time to find out which.
+      log.info("Retrying a chunk of {} mission update(s) one at a time", chunk.size(), e);
+      chunk.forEach(mission -> updateChunk(Collections.singletonList(mission), result));
+      return;
+    }
+
+    missionCache.putAll(updated);
+    updated.forEach(mission -> result.succeededId(mission.getId()));
+    failures.forEach(result::failure);
+  }
+
+  private void deleteChunk(final List<Long> chunk,
+      final SettlementMissionBatchResult.SettlementMissionBatchResultBuilder result) {
+    Map<Long, RuntimeException> failures = new LinkedHashMap<>();
+    List<Long> deleted;
+    try {
+      deleted = transactionTemplate.execute(status -> {
+        Map<Long, SettlementMission> stored = findAllById(chunk.stream());
+
+        List<SettlementMission> toDelete = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(chunk)) {
+          SettlementMission current = stored.get(id);
+          if (current != null) {
+            toDelete.add(current);
+          } else {
+            failures.put(id, notFound(id));
+          }
+        }
+        // The missions are already loaded, so this is just the batched deletes on commit
+        missionrpsy.deleteAll(toDelete);
+        return toDelete.stream().map(SettlementMission::getId).collect(Collectors.toList());
+      });
+    } catch (ObjectOptimisticLockingFailureException e) {
+      if (chunk.size() == 1) {
+        result.failure(chunk.get(0), e);
+        return;
+      }
+      log.info("Retrying a chunk of {} mission deletion(s) one at a time", chunk.size(), e);
+      chunk.forEach(id -> deleteChunk(Collections.singletonList(id), result));
+      return;
+    }
+
+    missionCache.evictAll(deleted);
+    deleted.forEach(result::succeededId);
+    failures.forEach(result::failure);
+  }
+
+  /*
+   * Load the missions with the given ids in a single query, keyed by id.
+   */
+  private Map<Long, SettlementMission> findAllById(final Stream<Long> ids) {
+    List<Long> idList = ids.filter(Objects::nonNull).distinct().collect(Collectors.toList());
+    Map<Long, SettlementMission> found = new HashMap<>();
+    missionrpsy.findAllById(idList).forEach(mission -> found.put(mission.getId(), mission));
+    return found;
+  }
+
+  private static EntityNotFoundException notFound(final Long id) {
+    return new EntityNotFoundException(SettlementMission.class, String.valueOf(id));
+  }
+
+  /**
+   * Walks through the missions matching a query, fetching the next page once the current one has
+   * been used up.
+   */
+  private class MissionPageIterator implements Iterator<SettlementMission> {
+
+    private final String depot;
+    private final long lastId;
+    private final int pageSize;
+
+    private long afterId;
+    private Iterator<SettlementMission> page = Collections.emptyIterator();
+    private boolean lastPage;
+
+    MissionPageIterator(final String depot, final long afterId, final long lastId,
+        final int pageSize) {
+      this.depot = depot;
+      this.afterId = afterId;
+      this.lastId = lastId;
+      this.pageSize = pageSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (!page.hasNext() && !lastPage) {
+        List<SettlementMission> missions =
+            missionrpsy.findPageAfter(afterId, lastId, depot, PageRequest.of(0, pageSize));
+        log.debug("Fetched page of {} mission(s) after id {}", missions.size(), afterId);
+
+        lastPage = missions.size() < pageSize;
+        if (!missions.isEmpty()) {
+          afterId = missions.get(missions.size() - 1).getId();
+        }
+        page = missions.iterator();
+      }
+      return page.hasNext();
+    }
+
+    @Override
+    public SettlementMission next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return page.next();
+    }
+  }
 }
@@ -2,29 +2,131 @@ package org.galatea.starter.utils;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import lombok.EqualsAndHashCode;
-import lombok.RequiredArgsConstructor;
+import lombok.NonNull;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.utils.rest.TraceSamplingPolicy;
 import org.springframework.boot.actuate.trace.http.HttpTrace;
-import org.springframework.boot.actuate.trace.http.InMemoryHttpTraceRepository;
+import org.springframework.boot.actuate.trace.http.HttpTraceRepository;
 
-@RequiredArgsConstructor
-@ToString(callSuper = true)
-@EqualsAndHashCode(callSuper = true)
+/**
+ * Keeps and logs the traces of a sample of HTTP requests (see TraceSamplingPolicy).
+ *
+ * <p>Logging a trace means serializing it to JSON, which is too slow to do on the request thread.
+ * Traces are instead handed to a single recorder thread through a bounded queue. If the recorder
+ * falls behind and the queue fills up, further traces are dropped and counted rather than holding
+ * up requests.
+ *
+ * <p>Recorded traces are kept in an HttpTraceRingBuffer, which can be searched (e.g. for the
+ * slowest requests) without blocking the recorder.
+ */
+@ToString
+@EqualsAndHashCode
 @Slf4j
-public class FuseHttpTraceRepository extends InMemoryHttpTraceRepository {
+public class FuseHttpTraceRepository implements HttpTraceRepository {
 
+  @NonNull
   private final ObjectMapper objectMapper;
 
+  @NonNull
+  private final TraceSamplingPolicy samplingPolicy;
+
+  @ToString.Exclude
+  @EqualsAndHashCode.Exclude
+  private final HttpTraceRingBuffer traces;
+
+  @ToString.Exclude
+  @EqualsAndHashCode.Exclude
+  private final ThreadPoolExecutor recorder;
+
+  @ToString.Exclude
+  @EqualsAndHashCode.Exclude
+  private final LongAdder droppedTraces = new LongAdder();
+
+  /**
+   * Creates a repository that records traces in the background.
+   *
+   * @param objectMapper used to write traces to the log
+   * @param samplingPolicy decides which traces are recorded
+   * @param queueCapacity the most traces that may wait to be recorded
+   * @param capacity the number of recorded traces kept
+   */
+  public FuseHttpTraceRepository(final ObjectMapper objectMapper,
+      final TraceSamplingPolicy samplingPolicy, final int queueCapacity, final int capacity) {
+    this.objectMapper = objectMapper;
+    this.samplingPolicy = samplingPolicy;
+    this.traces = new HttpTraceRingBuffer(capacity);
+    ThreadFactory threadFactory = task -> {
+      Thread thread = new Thread(task, "http-trace-recorder");
+      thread.setDaemon(true);
+      return thread;
+    };
+    this.recorder = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity), threadFactory,
+        (task, executor) -> droppedTraces.increment());
+  }
+
+  /**
+   * The most recently recorded traces, most recent first.
+   */
+  @Override
+  public List<HttpTrace> findAll() {
+    return traces.find(HttpTraceQuery.builder().limit(Integer.MAX_VALUE).build());
+  }
+
+  /**
+   * Find the recorded traces that match the given query, most recent first.
+   */
+  public List<HttpTrace> find(final HttpTraceQuery query) {
+    return traces.find(query);
+  }
+
+  /**
+   * Find the slowest recorded traces that match the given query, slowest first.
+   */
+  public List<HttpTrace> findSlowest(final HttpTraceQuery query, final int count) {
+    return traces.findSlowest(query, count);
+  }
+
   @Override
   public void add(final HttpTrace trace) {
+    String path = trace.getRequest().getUri().getPath();
+    int status = trace.getResponse() == null ? 0 : trace.getResponse().getStatus();
+    if (samplingPolicy.shouldRecord(path, status)) {
+      recorder.execute(() -> record(trace));
+    }
+  }
+
+  /**
+   * The number of sampled traces dropped because the recorder's queue was full.
+   */
+  public long getDroppedTraceCount() {
+    return droppedTraces.sum();
+  }
+
+  /**
+   * Stop the recorder thread once the traces already queued have been recorded.
+   */
+  public void shutdown() {
+    recorder.shutdown();
+  }
+
+  private void record(final HttpTrace trace) {
     // HttpTrace has no toString, nor do its inner classes...
-    try {
-      log.info("Adding trace info: {}", objectMapper.writeValueAsString(trace));
-    } catch (JsonProcessingException e) {
-      log.warn("Error logging trace info: ", e);
+    if (log.isInfoEnabled()) {
+      try {
+        log.info("Adding trace info: {}", objectMapper.writeValueAsString(trace));
+      } catch (JsonProcessingException e) {
+        log.warn("Error logging trace info: ", e);
+      }
     }
-    super.add(trace);
+    traces.add(trace);
   }
 }
@@ -0,0 +1,50 @@
+package org.galatea.starter.utils;
+
+import java.time.Instant;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.boot.actuate.trace.http.HttpTrace;
+
+/**
+ * Criteria for finding HTTP traces. Traces must match every criterion that is set; an empty query
+ * matches every trace.
+ */
+@Builder
+@Getter
+@ToString
+public class HttpTraceQuery {
+
+  /** The response status. */
+  private final Integer status;
+
+  /** The start of the request path. */
+  private final String pathPrefix;
+
+  /** The earliest time the request may have been received. */
+  private final Instant from;
+
+  /** The latest time the request may have been received. */
+  private final Instant to;
+
+  /** The most traces to return. */
+  @Builder.Default
+  private final int limit = 100;
+
+  /**
+   * Check whether the given trace matches this query.
+   */
+  public boolean matches(final HttpTrace trace) {
+    if (status != null
+        && (trace.getResponse() == null || trace.getResponse().getStatus() != status)) {
+      return false;
+    }
+    if (pathPrefix != null && !trace.getRequest().getUri().getPath().startsWith(pathPrefix)) {
+      return false;
+    }
+    if (from != null && trace.getTimestamp().isBefore(from)) {
+      return false;
+    }
+    return to == null || !trace.getTimestamp().isAfter(to);
+  }
+}
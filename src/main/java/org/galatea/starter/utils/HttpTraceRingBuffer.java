@@ -0,0 +1,124 @@
+package org.galatea.starter.utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.trace.http.HttpTrace;
+
+/**
+ * Holds the most recent HTTP traces, up to a fixed capacity, without locking.
+ *
+ * <p>Each trace is given the next sequence number and stored in the slot that number maps to,
+ * overwriting the trace that was capacity traces before it. Readers walk back from the latest
+ * sequence number and skip any slot that has already been overwritten, or hasn't been written yet,
+ * so writers never wait for readers or for each other, and readers never copy the whole buffer.
+ *
+ * <p>Traces are recorded in the background, so they aren't necessarily stored in the order their
+ * requests completed. A search by time therefore checks every trace held rather than stopping at
+ * the first one outside the window.
+ */
+public class HttpTraceRingBuffer {
+
+  private final AtomicReferenceArray<Entry> slots;
+
+  private final AtomicLong nextSequence = new AtomicLong();
+
+  /**
+   * Creates an empty buffer.
+   *
+   * @param capacity the number of traces kept
+   */
+  public HttpTraceRingBuffer(final int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be positive but was " + capacity);
+    }
+    this.slots = new AtomicReferenceArray<>(capacity);
+  }
+
+  /**
+   * Store the given trace, replacing the oldest trace if the buffer is full.
+   */
+  public void add(@NonNull final HttpTrace trace) {
+    long sequence = nextSequence.getAndIncrement();
+    slots.set(slot(sequence), new Entry(sequence, trace));
+  }
+
+  /**
+   * Find the traces that match the given query, most recent first.
+   *
+   * @param query the criteria the traces must match
+   * @return at most query.limit matching traces
+   */
+  public List<HttpTrace> find(@NonNull final HttpTraceQuery query) {
+    List<HttpTrace> found = new ArrayList<>(Math.min(query.getLimit(), slots.length()));
+    forEachMatch(query, found::add, () -> found.size() >= query.getLimit());
+    return found;
+  }
+
+  /**
+   * Find the slowest traces that match the given query.
+   *
+   * @param query the criteria the traces must match; its limit is ignored
+   * @param count the number of traces to return
+   * @return at most count matching traces, slowest first
+   */
+  public List<HttpTrace> findSlowest(@NonNull final HttpTraceQuery query, final int count) {
+    if (count <= 0) {
+      return new ArrayList<>();
+    }
+
+    // Keep the slowest traces seen so far, with the fastest of them at the head so it can be
+    // swapped out cheaply
+    Comparator<HttpTrace> byTimeTaken = Comparator.comparingLong(HttpTraceRingBuffer::timeTaken);
+    PriorityQueue<HttpTrace> slowest = new PriorityQueue<>(count + 1, byTimeTaken);
+    forEachMatch(query, trace -> {
+      slowest.add(trace);
+      if (slowest.size() > count) {
+        slowest.poll();
+      }
+    }, () -> false);
+
+    List<HttpTrace> found = new ArrayList<>(slowest);
+    found.sort(byTimeTaken.reversed());
+    return found;
+  }
+
+  private void forEachMatch(final HttpTraceQuery query, final Consumer<HttpTrace> action,
+      final BooleanSupplier done) {
+    long last = nextSequence.get() - 1;
+    long first = Math.max(0, last - slots.length() + 1);
+    for (long sequence = last; sequence >= first && !done.getAsBoolean(); sequence--) {
+      Entry entry = slots.get(slot(sequence));
+      // The slot has been overwritten by a later trace, or its trace is still being stored
+      if (entry == null || entry.sequence != sequence) {
+        continue;
+      }
+      if (query.matches(entry.trace)) {
+        action.accept(entry.trace);
+      }
+    }
+  }
+
+  private int slot(final long sequence) {
+    return (int) (sequence % slots.length());
+  }
+
+  private static long timeTaken(final HttpTrace trace) {
+    return trace.getTimeTaken() == null ? 0 : trace.getTimeTaken();
+  }
+
+  @RequiredArgsConstructor
+  private static final class Entry {
+
+    private final long sequence;
+
+    private final HttpTrace trace;
+  }
+}
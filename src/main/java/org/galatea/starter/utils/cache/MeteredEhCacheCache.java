@@ -0,0 +1,55 @@
+package org.galatea.starter.utils.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import net.sf.ehcache.Ehcache;
+import org.springframework.cache.ehcache.EhCacheCache;
+
+/**
+ * An EhCacheCache that also times the loads done through @Cacheable(sync = true).
+ *
+ * <p>cache.load is the time taken to load a value missing from the cache. cache.sync.get is the
+ * whole call, including any time spent waiting for another thread to load the same key, so a
+ * cache.sync.get well above cache.load points at threads queuing up on each other's loads.
+ *
+ * <p>Hits, misses, puts, evictions and sizes are reported by Spring Boot's own Ehcache meters,
+ * which still apply since this is an EhCacheCache.
+ */
+public class MeteredEhCacheCache extends EhCacheCache {
+
+  private final Timer loadTimer;
+
+  private final Timer syncGetTimer;
+
+  /**
+   * Create a cache backed by the given ehcache, registering its timers with the given registry.
+   *
+   * @param ehcache the ehcache to wrap
+   * @param meterRegistry the registry the timers are registered with
+   * @param tags tags added to the timers, alongside the cache name
+   */
+  public MeteredEhCacheCache(final Ehcache ehcache, final MeterRegistry meterRegistry,
+      final Tags tags) {
+    super(ehcache);
+    Tags cacheTags = tags.and("cache", getName());
+    this.loadTimer = Timer.builder("cache.load")
+        .description("Time taken to load a value missing from the cache")
+        .tags(cacheTags).register(meterRegistry);
+    this.syncGetTimer = Timer.builder("cache.sync.get")
+        .description("Time taken by synchronized gets, including waiting on other threads' loads")
+        .tags(cacheTags).register(meterRegistry);
+  }
+
+  @Override
+  public <T> T get(final Object key, final Callable<T> valueLoader) {
+    long start = System.nanoTime();
+    try {
+      return super.get(key, () -> loadTimer.recordCallable(valueLoader));
+    } finally {
+      syncGetTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+}
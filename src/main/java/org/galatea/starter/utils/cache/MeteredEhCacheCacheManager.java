@@ -0,0 +1,51 @@
+package org.galatea.starter.utils.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import java.util.Collection;
+import java.util.stream.Collectors;
+import lombok.NonNull;
+import org.springframework.cache.Cache;
+import org.springframework.cache.ehcache.EhCacheCache;
+import org.springframework.cache.ehcache.EhCacheCacheManager;
+
+/**
+ * An EhCacheCacheManager whose caches time their loads (see MeteredEhCacheCache).
+ */
+public class MeteredEhCacheCacheManager extends EhCacheCacheManager {
+
+  @NonNull
+  private final MeterRegistry meterRegistry;
+
+  @NonNull
+  private final Tags tags;
+
+  /**
+   * Create a cache manager for the given ehcache manager.
+   *
+   * @param cacheManager the ehcache manager holding the caches
+   * @param meterRegistry the registry each cache's timers are registered with
+   * @param name the name the caches' timers are tagged with, as cacheManager
+   */
+  public MeteredEhCacheCacheManager(final net.sf.ehcache.CacheManager cacheManager,
+      final MeterRegistry meterRegistry, final String name) {
+    super(cacheManager);
+    this.meterRegistry = meterRegistry;
+    this.tags = Tags.of("cacheManager", name);
+  }
+
+  @Override
+  protected Collection<Cache> loadCaches() {
+    return super.loadCaches().stream().map(this::meter).collect(Collectors.toList());
+  }
+
+  @Override
+  protected Cache getMissingCache(final String name) {
+    Cache missing = super.getMissingCache(name);
+    return missing == null ? null : meter(missing);
+  }
+
+  private Cache meter(final Cache cache) {
+    return new MeteredEhCacheCache(((EhCacheCache) cache).getNativeCache(), meterRegistry, tags);
+  }
+}
@@ -1,14 +1,41 @@
 package org.galatea.starter.utils.http.converter;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import com.fasterxml.jackson.dataformat.csv.CsvMapper;
 import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 import java.io.IOException;
+import java.io.OutputStream;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class CsvSerializer {
 
+  // Note that Jackson CSV doesn't work on objects with fields that hold complex objects
+  // See https://github.com/FasterXML/jackson-dataformat-csv/issues/9
+  // Mappers are thread-safe once configured, so we only need the one
+  private static final CsvMapper MAPPER = new CsvMapper();
+
+  static {
+    MAPPER.disable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY);
+    MAPPER.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+  }
+
+  // Building a schema introspects the class, so each class's writer (which holds its schema) is
+  // built once and reused. ObjectWriters are immutable and so safe to share between threads.
+  private static final ClassValue<ObjectWriter> WRITERS = new ClassValue<ObjectWriter>() {
+    @Override
+    protected ObjectWriter computeValue(final Class<?> type) {
+      // Jackson CSV uses the property names for the header row by default. To have a custom header
+      // for one or more columns, see
+      // https://stackoverflow.com/questions/40221223/jackson-dataformat-csv-are-custom-column-names-possible
+      CsvSchema schema = MAPPER.schemaFor(type).withHeader();
+      return MAPPER.writer(schema);
+    }
+  };
+
   private CsvSerializer() {}
 
   /**
@@ -23,19 +50,32 @@ public class CsvSerializer {
    * @param rows the collection of objects that should be serialized into the CSV document
    * @param clazz the class that is the type of the row data
    * @param <T> the type of the row data
-   * @return an xlsx spreadsheet as a byte array
+   * @return the CSV document as a string
    */
   public static <T> String serializeToCsv(final Iterable<T> rows, final Class<T> clazz)
       throws IOException {
-    // Note that Jackson CSV doesn't work on objects with fields that hold complex objects
-    // See https://github.com/FasterXML/jackson-dataformat-csv/issues/9
-    CsvMapper mapper = new CsvMapper();
-    mapper.disable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY);
-    // Jackson CSV uses the property names for the header row by default. To have a custom header
-    // for one or more columns, see
-    // https://stackoverflow.com/questions/40221223/jackson-dataformat-csv-are-custom-column-names-possible
-    CsvSchema schema = mapper.schemaFor(clazz).withHeader();
-    return mapper.writer(schema).writeValueAsString(rows);
+    return WRITERS.get(clazz).writeValueAsString(rows);
     // See CsvWriterTest for examples of Jackson CSV behavior
   }
+
+  /**
+   * Serialize the given objects to a CSV document, writing each row to the given stream as soon as
+   * it has been serialized instead of building the whole document in memory first.
+   *
+   * <p>See {@link #serializeToCsv(Iterable, Class)} for the format of the document. The stream is
+   * flushed but not closed.
+   *
+   * @param rows the collection of objects that should be serialized into the CSV document
+   * @param clazz the class that is the type of the row data
+   * @param out the stream to write the CSV document to
+   * @param <T> the type of the row data
+   */
+  public static <T> void serializeToCsv(final Iterable<T> rows, final Class<T> clazz,
+      final OutputStream out) throws IOException {
+    try (SequenceWriter writer = WRITERS.get(clazz).writeValues(out)) {
+      for (T row : rows) {
+        writer.write(row);
+      }
+    }
+  }
 }
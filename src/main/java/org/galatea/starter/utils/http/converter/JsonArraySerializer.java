@@ -0,0 +1,37 @@
+package org.galatea.starter.utils.http.converter;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+public class JsonArraySerializer {
+
+  // ObjectMappers are thread-safe once configured, so we only need the one
+  private static final ObjectMapper MAPPER = new ObjectMapper()
+      .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+
+  private JsonArraySerializer() {}
+
+  /**
+   * Serialize the given objects to a JSON array, writing each element to the given stream as soon
+   * as it has been serialized instead of building the whole document in memory first. The stream
+   * is flushed but not closed.
+   *
+   * @param rows the objects that should be serialized into the JSON array
+   * @param clazz the class that is the type of the array elements
+   * @param out the stream to write the JSON array to
+   * @param <T> the type of the array elements
+   */
+  public static <T> void serializeToJson(final Iterable<T> rows, final Class<T> clazz,
+      final OutputStream out) throws IOException {
+    try (SequenceWriter writer = MAPPER.writerFor(clazz).writeValuesAsArray(out)) {
+      for (T row : rows) {
+        writer.write(row);
+      }
+    }
+  }
+}
@@ -4,25 +4,39 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import lombok.SneakyThrows;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.reflect.FieldUtils;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
 @Slf4j
 // See XlsxSerializerTest for example output
 public class XlsxSerializer {
 
+  // The number of rows the streaming serializer keeps in memory before flushing them to disk
+  private static final int STREAMING_ROW_WINDOW = 100;
+
+  // Column metadata is worked out by reflection once per class and then reused for every call
+  private static final ClassValue<List<Column>> COLUMNS = new ClassValue<List<Column>>() {
+    @Override
+    protected List<Column> computeValue(final Class<?> type) {
+      return getColumns(type);
+    }
+  };
+
   private XlsxSerializer() {}
 
   /**
@@ -31,6 +45,9 @@ public class XlsxSerializer {
    * <p>Doesn't do any special handling of nested complex objects or collections in the given
    * row objects - each field in the row object is basically toString()'ed and put in a cell.
    *
+   * <p>Prefer {@link #serializeToXlsx(Iterable, Class, OutputStream)} where a stream is available,
+   * as this holds the whole spreadsheet in memory as a byte array.
+   *
    * @param rows the row data that the spreadsheet should hold
    * @param clazz the class that is the type of the row data
    * @param <T> the type of the row data
@@ -38,17 +55,62 @@ public class XlsxSerializer {
    */
   public static <T> byte[] serializeToXlsx(final Iterable<T> rows, final Class<T> clazz)
       throws IOException {
+    try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+      serializeToXlsx(rows, clazz, baos);
+      return baos.toByteArray();
+    } catch (IOException e) {
+      log.error("Unable to write spreadsheet to bytes", e);
+      throw e;
+    }
+  }
+
+  /**
+   * Serialize the given objects to an XLSX spreadsheet, writing it to the given stream.
+   *
+   * <p>Only a small window of rows is kept in memory; older rows are flushed to a temporary file
+   * until the spreadsheet is written out. The stream is not closed.
+   *
+   * @param rows the row data that the spreadsheet should hold
+   * @param clazz the class that is the type of the row data
+   * @param out the stream to write the spreadsheet to
+   * @param <T> the type of the row data
+   */
+  public static <T> void serializeToXlsx(final Iterable<T> rows, final Class<T> clazz,
+      final OutputStream out) throws IOException {
     // XSSF is used for xlsx-format spreadsheets, HSSF is used for xls-format
     // SXSSF is the streaming version of XSSF, and is useful for working with large spreadsheets
-    try (Workbook wb = new XSSFWorkbook()) {
+    SXSSFWorkbook wb = new SXSSFWorkbook(STREAMING_ROW_WINDOW);
+    try {
       Sheet sheet = wb.createSheet(clazz.getSimpleName());
-      List<Field> fieldsToSerialize = getFieldsToSerialize(clazz);
-      populateHeaderRow(sheet, getHeaderValues(fieldsToSerialize));
-      populateDataRows(sheet, fieldsToSerialize, rows);
-      return writeSpreadsheetToBytes(wb);
+      List<Column> columns = COLUMNS.get(clazz);
+      populateHeaderRow(sheet, columns);
+      populateDataRows(sheet, columns, rows);
+      wb.write(out);
+    } finally {
+      // Removes the temporary file that holds the rows flushed out of the window
+      wb.dispose();
+      wb.close();
     }
   }
 
+  /*
+   * Build the columns for the given class: one per serializable field, each with its header and a
+   * getter that can read the field without going through reflection on every row.
+   */
+  private static List<Column> getColumns(final Class<?> clazz) {
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    List<Column> columns = new ArrayList<>();
+    for (Field field : getFieldsToSerialize(clazz)) {
+      field.setAccessible(true);
+      try {
+        columns.add(new Column(getHeaderValue(field), lookup.unreflectGetter(field)));
+      } catch (IllegalAccessException e) {
+        throw new IllegalStateException("Unable to access field " + field, e);
+      }
+    }
+    return Collections.unmodifiableList(columns);
+  }
+
   /*
    * Get a list of all fields in the given class, including inherited and private fields, but
    * excluding any @JsonIgnore'd fields.
@@ -91,48 +153,43 @@ public class XlsxSerializer {
   }
 
   /*
-   * Get the column headers that should be used for the given fields. If a @JsonProperty annotation
-   * is present on a given field, use that annotation's value as the header, otherwise use the field
+   * Get the column header that should be used for the given field. If a @JsonProperty annotation
+   * is present on the field, use that annotation's value as the header, otherwise use the field
    * name.
    */
-  private static List<String> getHeaderValues(final List<Field> fields) {
-    List<String> headers = new ArrayList<>();
-    for (Field field : fields) {
-      // Could also use a custom annotation instead of JsonProperty if different configuration is
-      // needed for JSON and XLSX serialization
-      JsonProperty customHeaderNameAnnotation = field.getAnnotation(JsonProperty.class);
-      String header = customHeaderNameAnnotation == null
-          ? field.getName()
-          : customHeaderNameAnnotation.value();
-      headers.add(header);
-    }
-    return headers;
+  private static String getHeaderValue(final Field field) {
+    // Could also use a custom annotation instead of JsonProperty if different configuration is
+    // needed for JSON and XLSX serialization
+    JsonProperty customHeaderNameAnnotation = field.getAnnotation(JsonProperty.class);
+    return customHeaderNameAnnotation == null
+        ? field.getName()
+        : customHeaderNameAnnotation.value();
   }
 
   /*
-   * Populate the first row of the given sheet using the given list of header values.
+   * Populate the first row of the given sheet using the headers of the given columns.
    */
-  private static void populateHeaderRow(final Sheet sheet, final List<String> headers) {
+  private static void populateHeaderRow(final Sheet sheet, final List<Column> columns) {
     Row headerRow = sheet.createRow(0);
-    for (int col = 0; col < headers.size(); col++) {
+    for (int col = 0; col < columns.size(); col++) {
       Cell headerCell = headerRow.createCell(col);
-      headerCell.setCellValue(headers.get(col));
+      headerCell.setCellValue(columns.get(col).getHeader());
     }
   }
 
   /*
    * Populate the rows of the given sheet using the given row data.
    */
-  @SneakyThrows(IllegalAccessException.class)
-  private static <T> void populateDataRows(final Sheet sheet, final List<Field> fieldsToSerialize,
+  @SneakyThrows
+  private static <T> void populateDataRows(final Sheet sheet, final List<Column> columns,
       final Iterable<T> rows) {
     int rowIndex = 1; // header is row 0
     for (T row : rows) {
       Row dataRow = sheet.createRow(rowIndex);
       rowIndex++;
-      for (int col = 0; col < fieldsToSerialize.size(); col++) {
+      for (int col = 0; col < columns.size(); col++) {
         Cell dataCell = dataRow.createCell(col);
-        Object cellObject = FieldUtils.readField(fieldsToSerialize.get(col), row, true);
+        Object cellObject = columns.get(col).getGetter().invoke(row);
         dataCell.setCellValue(stringify(cellObject));
       }
     }
@@ -161,13 +218,13 @@ public class XlsxSerializer {
     }
   }
 
-  private static byte[] writeSpreadsheetToBytes(final Workbook wb) throws IOException {
-    try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-      wb.write(baos);
-      return baos.toByteArray();
-    } catch (IOException e) {
-      log.error("Unable to write spreadsheet to bytes", e);
-      throw e;
-    }
+  /*
+   * A spreadsheet column: the header text and a getter for the field that fills it.
+   */
+  @Value
+  private static class Column {
+
+    private String header;
+    private MethodHandle getter;
   }
 }
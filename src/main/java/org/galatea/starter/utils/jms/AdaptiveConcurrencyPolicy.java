@@ -0,0 +1,64 @@
+package org.galatea.starter.utils.jms;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Decides how many consumers a listener container may run, from how far behind it is and how much
+ * strain its work is putting on the database.
+ *
+ * <p>The limit grows by one consumer while the queue holds more than backlogPerConsumer messages
+ * per consumer, and shrinks by one once the queue is empty. If the database connection pool is
+ * saturated or each unit of work (e.g. each trade agreement) is taking longer than
+ * latencyLimitMillis to process, more consumers would only make things worse, so the limit is
+ * halved. Latency is measured per unit rather than per message, so that a message carrying a large
+ * batch doesn't hold the limit down on its own. Adding slowly and backing off quickly lets the
+ * container settle just below the point where the database becomes the bottleneck.
+ */
+@Builder
+@Getter
+@ToString
+public class AdaptiveConcurrencyPolicy {
+
+  /** The most consumers the container may ever run. */
+  private final int maxConsumers;
+
+  /** Queued messages per consumer above which another consumer is added. */
+  private final int backlogPerConsumer;
+
+  /** Average time per unit of work, in milliseconds, above which consumers are taken away. */
+  private final long latencyLimitMillis;
+
+  /** Fraction of the connection pool in use (0 to 1) at which consumers are taken away. */
+  private final double poolSaturationLimit;
+
+  /** How often the limit is reconsidered. */
+  private final long intervalMillis;
+
+  /** The most messages counted when measuring the queue depth. */
+  private final int depthProbeLimit;
+
+  /**
+   * Work out the next limit on the number of consumers.
+   *
+   * @param current the current limit
+   * @param floor the fewest consumers the container must be allowed
+   * @param queueDepth the number of messages waiting on the queue (up to depthProbeLimit)
+   * @param latencyMillis the average time taken to process a unit of work, in milliseconds
+   * @param poolSaturation the fraction of the database connection pool in use, from 0 to 1
+   * @return the new limit, between floor and maxConsumers
+   */
+  public int nextMaxConsumers(final int current, final int floor, final int queueDepth,
+      final double latencyMillis, final double poolSaturation) {
+    int next = current;
+    if (poolSaturation >= poolSaturationLimit || latencyMillis > latencyLimitMillis) {
+      next = current / 2;
+    } else if (queueDepth > (long) current * backlogPerConsumer) {
+      next = current + 1;
+    } else if (queueDepth == 0) {
+      next = current - 1;
+    }
+    return Math.max(floor, Math.min(Math.max(floor, maxConsumers), next));
+  }
+}
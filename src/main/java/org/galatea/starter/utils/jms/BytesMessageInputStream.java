@@ -0,0 +1,64 @@
+package org.galatea.starter.utils.jms;
+
+import java.io.IOException;
+import java.io.InputStream;
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.MessageEOFException;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Reads the body of a JMS BytesMessage as an InputStream, so that it can be handed to a parser
+ * without first being copied into a byte array the size of the whole body.
+ *
+ * <p>The stream reads from the message's current position and moves it on, like the read methods
+ * of BytesMessage itself.
+ */
+@RequiredArgsConstructor
+public class BytesMessageInputStream extends InputStream {
+
+  @NonNull
+  private final BytesMessage message;
+
+  // Only needed for reads into the middle of an array, which BytesMessage can't do itself
+  private byte[] scratch;
+
+  @Override
+  public int read() throws IOException {
+    try {
+      return message.readByte() & 0xFF;
+    } catch (MessageEOFException e) {
+      return -1;
+    } catch (JMSException e) {
+      throw new IOException("Could not read the message body.", e);
+    }
+  }
+
+  @Override
+  public int read(final byte[] b, final int off, final int len) throws IOException {
+    if (off < 0 || len < 0 || len > b.length - off) {
+      throw new IndexOutOfBoundsException();
+    }
+    if (len == 0) {
+      return 0;
+    }
+
+    try {
+      if (off == 0) {
+        return message.readBytes(b, len);
+      }
+
+      if (scratch == null || scratch.length < len) {
+        scratch = new byte[len];
+      }
+      int read = message.readBytes(scratch, len);
+      if (read > 0) {
+        System.arraycopy(scratch, 0, b, off, read);
+      }
+      return read;
+    } catch (JMSException e) {
+      throw new IOException("Could not read the message body.", e);
+    }
+  }
+}
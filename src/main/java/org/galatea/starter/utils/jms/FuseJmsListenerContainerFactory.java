@@ -1,10 +1,12 @@
 package org.galatea.starter.utils.jms;
 
 import java.util.function.BiConsumer;
+import java.util.function.DoubleSupplier;
 import javax.jms.Message;
 import lombok.EqualsAndHashCode;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jms.config.DefaultJmsListenerContainerFactory;
@@ -20,9 +22,26 @@ public class FuseJmsListenerContainerFactory extends DefaultJmsListenerContainer
   @NonNull
   protected BiConsumer<Message, Exception> failedMessageConsumer;
 
+  /** Adapts each container's consumers as it runs; null to leave them as configured. */
+  @Setter
+  protected AdaptiveConcurrencyPolicy concurrencyPolicy;
+
+  @Setter
+  @NonNull
+  protected DoubleSupplier poolSaturation = () -> 0;
+
+  @Setter
+  @NonNull
+  protected DoubleSupplier processingLatency = () -> 0;
+
   @Override
   protected DefaultMessageListenerContainer createContainerInstance() {
-    return new FuseMessageListenerContainer(failedMessageConsumer);
+    FuseMessageListenerContainer container =
+        new FuseMessageListenerContainer(failedMessageConsumer);
+    container.setConcurrencyPolicy(concurrencyPolicy);
+    container.setPoolSaturation(poolSaturation);
+    container.setProcessingLatency(processingLatency);
+    return container;
   }
 
 }
@@ -1,15 +1,22 @@
 package org.galatea.starter.utils.jms;
 
+import java.util.Enumeration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
+import java.util.function.DoubleSupplier;
 import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.Session;
 import lombok.EqualsAndHashCode;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.SneakyThrows;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jms.core.JmsTemplate;
 import org.springframework.jms.listener.DefaultMessageListenerContainer;
 
 @RequiredArgsConstructor
@@ -21,6 +28,30 @@ public class FuseMessageListenerContainer extends DefaultMessageListenerContaine
   @NonNull
   protected BiConsumer<Message, Exception> failedMessageConsumer;
 
+  /**
+   * When set, the container's maximum number of consumers is adjusted as it runs, between its
+   * concurrent consumers and the policy's max consumers. See AdaptiveConcurrencyPolicy.
+   */
+  @Setter
+  protected AdaptiveConcurrencyPolicy concurrencyPolicy;
+
+  /** The fraction of the database connection pool in use, from 0 to 1. */
+  @Setter
+  @NonNull
+  protected DoubleSupplier poolSaturation = () -> 0;
+
+  /**
+   * The average time taken to process one unit of work (e.g. one trade agreement), in
+   * milliseconds. See ProcessingLatency.
+   */
+  @Setter
+  @NonNull
+  protected DoubleSupplier processingLatency = () -> 0;
+
+  @ToString.Exclude
+  @EqualsAndHashCode.Exclude
+  private ScheduledExecutorService concurrencyScheduler;
+
   @Override
   @SneakyThrows
   protected void invokeListener(final Session session, final Message message) {
@@ -37,4 +68,69 @@ public class FuseMessageListenerContainer extends DefaultMessageListenerContaine
       failedMessageConsumer.accept(message, e);
     }
   }
+
+  @Override
+  protected void doInitialize() throws JMSException {
+    super.doInitialize();
+    if (concurrencyPolicy == null) {
+      return;
+    }
+
+    concurrencyScheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+      Thread thread = new Thread(task, getBeanName() + "-concurrency");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long interval = concurrencyPolicy.getIntervalMillis();
+    concurrencyScheduler.scheduleWithFixedDelay(this::adjustConcurrency, interval, interval,
+        TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  protected void doShutdown() throws JMSException {
+    if (concurrencyScheduler != null) {
+      concurrencyScheduler.shutdownNow();
+    }
+    super.doShutdown();
+  }
+
+  /**
+   * Reconsider the maximum number of consumers, from the depth of the queue, how long each unit of
+   * work is taking to process and how busy the database connection pool is.
+   */
+  protected void adjustConcurrency() {
+    // Any exception would cancel the schedule, so a failed probe just skips this round
+    try {
+      int current = getMaxConcurrentConsumers();
+      int next = concurrencyPolicy.nextMaxConsumers(current, getConcurrentConsumers(),
+          queueDepth(), processingLatency.getAsDouble(), poolSaturation.getAsDouble());
+      if (next != current) {
+        log.info("Changing the maximum consumers of {} from {} to {}", getDestinationDescription(),
+            current, next);
+        setMaxConcurrentConsumers(next);
+      }
+    } catch (RuntimeException e) {
+      log.warn("Could not adjust the consumers of {}", getDestinationDescription(), e);
+    }
+  }
+
+  private int queueDepth() {
+    if (isPubSubDomain() || getDestinationName() == null) {
+      return 0;
+    }
+
+    // Browsing counts the messages without consuming them; stop at the probe limit since the
+    // policy only needs to know whether there's more than a few batches' worth waiting
+    Integer depth = new JmsTemplate(getConnectionFactory()).browse(getDestinationName(),
+        (session, browser) -> {
+          Enumeration<?> messages = browser.getEnumeration();
+          int count = 0;
+          while (count < concurrencyPolicy.getDepthProbeLimit() && messages.hasMoreElements()) {
+            messages.nextElement();
+            count++;
+          }
+          return count;
+        });
+    return depth == null ? 0 : depth;
+  }
 }
@@ -0,0 +1,44 @@
+package org.galatea.starter.utils.jms;
+
+import java.util.function.DoubleSupplier;
+import lombok.ToString;
+
+/**
+ * A moving average of how long each unit of work (e.g. each trade agreement) takes to process.
+ *
+ * <p>Timing whole messages would make a message carrying a large batch look slow even when every
+ * agreement in it settles quickly, so the time is divided by the number of units it covered
+ * before it's folded into the average.
+ */
+@ToString
+public class ProcessingLatency implements DoubleSupplier {
+
+  /** Weight given to the latest measurement when updating the average. */
+  private static final double WEIGHT = 0.2;
+
+  private volatile double averageMillis;
+
+  /**
+   * Fold the time taken to process some units of work into the average.
+   *
+   * @param elapsedNanos how long the work took, in nanoseconds
+   * @param units how many units of work it covered; nothing is recorded if there were none
+   */
+  public synchronized void record(final long elapsedNanos, final int units) {
+    if (units <= 0) {
+      return;
+    }
+
+    double latencyMillis = elapsedNanos / 1_000_000d / units;
+    averageMillis = averageMillis == 0 ? latencyMillis
+        : averageMillis + WEIGHT * (latencyMillis - averageMillis);
+  }
+
+  /**
+   * The average time taken per unit of work, in milliseconds, or 0 if nothing has been recorded.
+   */
+  @Override
+  public double getAsDouble() {
+    return averageMillis;
+  }
+}
@@ -0,0 +1,114 @@
+package org.galatea.starter.utils.jpa;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.id.PersistentIdentifierGenerator;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+/**
+ * Sequence based id generator that reserves ids in blocks, so that inserting n entities doesn't
+ * cost n round trips to the database for their ids and JDBC insert batching stays effective.
+ *
+ * <p>The optimizer (none, hilo, pooled or pooled-lo) and the block size are read from the
+ * fuse.id.optimizer and fuse.id.increment-size Hibernate settings (see hibernate.properties),
+ * unless the mapping sets them explicitly. On dialects without sequence support (e.g. the MySQL
+ * dialect we use) Hibernate falls back to a single-row table that is read once per block instead.
+ *
+ * <p>Unless the mapping sets an initial value, a sequence created by schema update starts after the
+ * highest id already in the entity's table. That way moving an entity onto its own sequence
+ * doesn't hand out ids that an earlier generator has already used.
+ */
+@Slf4j
+public class BlockSequenceGenerator extends SequenceStyleGenerator {
+
+  public static final String OPTIMIZER_SETTING = "fuse.id.optimizer";
+  public static final String INCREMENT_SIZE_SETTING = "fuse.id.increment-size";
+
+  private static final String DEFAULT_OPTIMIZER =
+      StandardOptimizerDescriptor.POOLED_LO.getExternalName();
+  private static final int DEFAULT_INCREMENT_SIZE = 50;
+
+  @Override
+  public void configure(final Type type, final Properties params,
+      final ServiceRegistry serviceRegistry) throws MappingException {
+    ConfigurationService configuration = serviceRegistry.getService(ConfigurationService.class);
+
+    String optimizer = configuration.getSetting(OPTIMIZER_SETTING, StandardConverters.STRING,
+        DEFAULT_OPTIMIZER);
+    // Without an optimizer every id is its own round trip, so a larger increment would only leave
+    // gaps in the ids
+    int incrementSize = StandardOptimizerDescriptor.NONE.getExternalName().equals(optimizer)
+        ? 1
+        : configuration.getSetting(INCREMENT_SIZE_SETTING, StandardConverters.INTEGER,
+            DEFAULT_INCREMENT_SIZE);
+
+    params.putIfAbsent(OPT_PARAM, optimizer);
+    params.putIfAbsent(INCREMENT_PARAM, String.valueOf(incrementSize));
+    if (!params.containsKey(INITIAL_PARAM)) {
+      // The pooled optimizer treats the value it reads as the top of its block, the others as the
+      // bottom (or, for hilo, as a block number)
+      long firstFreeId = maxId(params, serviceRegistry) + 1;
+      boolean pooled = StandardOptimizerDescriptor.POOLED.getExternalName()
+          .equals(params.getProperty(OPT_PARAM));
+      params.setProperty(INITIAL_PARAM, String.valueOf(pooled
+          ? firstFreeId + Integer.parseInt(params.getProperty(INCREMENT_PARAM)) - 1
+          : firstFreeId));
+    }
+    log.info("Allocating ids for {} using optimizer {} with increment size {}, starting at {}",
+        params.getProperty(SEQUENCE_PARAM), params.getProperty(OPT_PARAM),
+        params.getProperty(INCREMENT_PARAM), params.getProperty(INITIAL_PARAM));
+
+    super.configure(type, params, serviceRegistry);
+  }
+
+  /*
+   * The highest id in the entity's table, or 0 if the table is empty or doesn't exist yet. The
+   * initial value only matters when the sequence is first created, so this runs once at startup.
+   */
+  private static long maxId(final Properties params, final ServiceRegistry serviceRegistry) {
+    String table = params.getProperty(PersistentIdentifierGenerator.TABLE);
+    String column = params.getProperty(PersistentIdentifierGenerator.PK);
+    ConnectionProvider connections = serviceRegistry.getService(ConnectionProvider.class);
+    if (table == null || column == null || connections == null) {
+      return 0;
+    }
+
+    Connection connection = null;
+    try {
+      connection = connections.getConnection();
+      try (Statement statement = connection.createStatement();
+          ResultSet result = statement.executeQuery(
+              "select max(" + column + ") from " + table)) {
+        return result.next() ? result.getLong(1) : 0;
+      }
+    } catch (SQLException e) {
+      log.debug("Could not read the highest id in {}, it may not have been created yet", table, e);
+      return 0;
+    } finally {
+      closeQuietly(connections, connection);
+    }
+  }
+
+  private static void closeQuietly(final ConnectionProvider connections,
+      final Connection connection) {
+    if (connection == null) {
+      return;
+    }
+    try {
+      connections.closeConnection(connection);
+    } catch (SQLException e) {
+      log.debug("Could not close the connection used to read the highest id", e);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package org.galatea.starter.utils.rest;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+/**
+ * Records how long each controller method takes to handle a request, from the moment it's
+ * dispatched to the controller until the response is complete (including the whole of a streamed
+ * body), as the timer http.endpoint.latency.
+ *
+ * <p>Timings are tagged by controller, method, response media type and status, and each timer
+ * publishes its p50, p99 and p999 from an HDR histogram. The timer's count over time gives each
+ * endpoint's throughput.
+ */
+@RequiredArgsConstructor
+public class EndpointLatencyInterceptor implements AsyncHandlerInterceptor {
+
+  public static final String METRIC_NAME = "http.endpoint.latency";
+
+  private static final String START_ATTRIBUTE =
+      EndpointLatencyInterceptor.class.getName() + ".start";
+
+  @NonNull
+  private final MeterRegistry meterRegistry;
+
+  /** Whether to also publish the histogram buckets, so percentiles can be aggregated later. */
+  private final boolean percentileHistogram;
+
+  @Override
+  public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response,
+      final Object handler) {
+    // Asynchronous requests come back through here on their async dispatch; keep the first start
+    if (request.getAttribute(START_ATTRIBUTE) == null) {
+      request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+    }
+    return true;
+  }
+
+  @Override
+  public void afterCompletion(final HttpServletRequest request,
+      final HttpServletResponse response, final Object handler, final Exception ex) {
+    Long start = (Long) request.getAttribute(START_ATTRIBUTE);
+    if (start == null || !(handler instanceof HandlerMethod)) {
+      return;
+    }
+
+    HandlerMethod handlerMethod = (HandlerMethod) handler;
+    Timer.builder(METRIC_NAME)
+        .description("Time taken by each controller method to handle a request")
+        .tag("controller", handlerMethod.getBeanType().getSimpleName())
+        .tag("method", handlerMethod.getMethod().getName())
+        .tag("mediaType", mediaType(response))
+        .tag("status", Integer.toString(response.getStatus()))
+        .publishPercentiles(0.5, 0.99, 0.999)
+        .publishPercentileHistogram(percentileHistogram)
+        .maximumExpectedValue(Duration.ofMinutes(10))
+        .register(meterRegistry)
+        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * The response's media type without parameters such as charset, to keep the number of distinct
+   * tags small.
+   */
+  private static String mediaType(final HttpServletResponse response) {
+    String contentType = response.getContentType();
+    if (contentType == null) {
+      return "none";
+    }
+    try {
+      MediaType mediaType = MediaType.parseMediaType(contentType);
+      return mediaType.getType() + "/" + mediaType.getSubtype();
+    } catch (IllegalArgumentException e) {
+      return "unknown";
+    }
+  }
+}
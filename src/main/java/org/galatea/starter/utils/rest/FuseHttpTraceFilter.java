@@ -3,6 +3,7 @@ package org.galatea.starter.utils.rest;
 import static org.galatea.starter.entrypoint.BaseRestController.EXTERNAL_REQUEST_ID;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Random;
@@ -21,7 +22,6 @@ import org.springframework.boot.actuate.trace.http.HttpExchangeTracer;
 import org.springframework.boot.actuate.trace.http.HttpTraceRepository;
 import org.springframework.boot.actuate.web.trace.servlet.HttpTraceFilter;
 import org.springframework.web.util.ContentCachingRequestWrapper;
-import org.springframework.web.util.ContentCachingResponseWrapper;
 import org.springframework.web.util.WebUtils;
 
 /**
@@ -43,17 +43,31 @@ public class FuseHttpTraceFilter extends HttpTraceFilter {
   @NonNull
   protected final Predicate<String> pathsToSkip;
 
+  protected final int maxPayloadSize;
+
   /**
    * Sadly we have to write our own constructor since lombok can't call super with args.
    *
    * @param repository the repository where we store our trace
    * @param pathsToSkip a predicate that will return try if we want to a skip a certain url
    *     path
+   * @param maxPayloadSize the most bytes of a request body that are kept for tracing
    */
   public FuseHttpTraceFilter(final HttpTraceRepository repository, final HttpExchangeTracer tracer,
-      final Predicate<String> pathsToSkip) {
+      final Predicate<String> pathsToSkip, final int maxPayloadSize) {
     super(repository, tracer);
     this.pathsToSkip = pathsToSkip;
+    this.maxPayloadSize = maxPayloadSize;
+  }
+
+  /**
+   * Asynchronous requests (e.g. streamed exports) write their body after the initial dispatch,
+   * through the response wrapper it created, and end with an async dispatch. We need to see those
+   * dispatches too, so that the response can be finished once the body is complete.
+   */
+  @Override
+  protected boolean shouldNotFilterAsyncDispatch() {
+    return false;
   }
 
   @Override
@@ -61,6 +75,15 @@ public class FuseHttpTraceFilter extends HttpTraceFilter {
       final HttpServletResponse response, final FilterChain filterChain)
       throws ServletException, IOException {
 
+    // The request was traced on its initial dispatch, all that's left is to finish the body
+    if (isAsyncDispatch(request)) {
+      filterChain.doFilter(request, response);
+      if (!isAsyncStarted(request)) {
+        finishResponse(response);
+      }
+      return;
+    }
+
     // generate the internal request Id
     // we want positive numbers only, so use nextInt(upperBound)
     String internallyGeneratedId =
@@ -79,38 +102,50 @@ public class FuseHttpTraceFilter extends HttpTraceFilter {
       return;
     }
 
-    boolean isFirstRequest = !isAsyncDispatch(request);
+    Instant requestReceivedTime = Instant.now();
     HttpServletRequest requestToUse = request;
     HttpServletResponse responseToUse = response;
 
-    // We need to do this for the request and response since you can only read the stream that holds
-    // the payload once
-    if (isFirstRequest && !(request instanceof ContentCachingRequestWrapper)) {
-      requestToUse = new ContentCachingRequestWrapper(request);
+    // We need to do this for the request since you can only read the stream that holds the payload
+    // once. Only the start of a large request body is kept.
+    if (!(request instanceof ContentCachingRequestWrapper)) {
+      requestToUse = new ContentCachingRequestWrapper(request, maxPayloadSize);
     }
-    if (isFirstRequest && !(response instanceof ContentCachingRequestWrapper)) {
-      responseToUse = new ContentCachingResponseWrapper(response);
+    // The response body is passed straight through to the client, so the audit headers have to be
+    // added just before the first byte of it is sent. Only the start of the body is copied, and
+    // only if it's going to be logged.
+    if (WebUtils.getNativeResponse(response, TeeResponseWrapper.class) == null) {
+      responseToUse = new TeeResponseWrapper(response, log.isDebugEnabled() ? maxPayloadSize : 0,
+          committing -> addAuditHeaders(requestReceivedTime, committing));
     }
 
-    doFilterInternalHelper(requestToUse, responseToUse, filterChain, Instant.now());
+    doFilterInternalHelper(requestToUse, responseToUse, filterChain);
   }
 
   @SneakyThrows
   // what's this method responsible for?
   protected void doFilterInternalHelper(final HttpServletRequest request,
-      final HttpServletResponse response, final FilterChain filterChain,
-      final Instant requestReceivedTime) {
+      final HttpServletResponse response, final FilterChain filterChain) {
 
     try {
       super.doFilterInternal(request, response, filterChain);
     } finally {
-      addAuditHeaders(requestReceivedTime.toString(), response);
-      updateResponse(response);
+      // If the request went async the body hasn't been written yet and is finished at the end of
+      // the async dispatch instead, but the headers can be added now if they haven't been already
+      if (isAsyncStarted(request)) {
+        TeeResponseWrapper responseWrapper =
+            WebUtils.getNativeResponse(response, TeeResponseWrapper.class);
+        if (responseWrapper != null) {
+          responseWrapper.commitHeaders();
+        }
+      } else {
+        finishResponse(response);
+      }
       MDC.clear();
     }
   }
 
-  private void addAuditHeaders(final String requestReceivedTime,
+  private void addAuditHeaders(final Instant requestReceivedTime,
       final HttpServletResponse response) {
     log.info("Attempting to add audit headers");
     String internalQueryId = MDC.get(INTERNAL_REQUEST_ID);
@@ -124,10 +159,11 @@ public class FuseHttpTraceFilter extends HttpTraceFilter {
           externalQueryId.replace(" - ", "")); // externalQueryId has a ' - ' in MDC
     }
 
-    logAndAddAuditHeader(response, "requestReceivedTime", requestReceivedTime);
+    logAndAddAuditHeader(response, "requestReceivedTime", requestReceivedTime.toString());
 
+    // The time until the response started, since the headers go out ahead of the body
     String requestElapsedTimeMillis =
-        String.valueOf(Instant.parse(requestReceivedTime).until(Instant.now(), ChronoUnit.MILLIS));
+        String.valueOf(requestReceivedTime.until(Instant.now(), ChronoUnit.MILLIS));
     logAndAddAuditHeader(response, "requestElapsedTimeMillis", requestElapsedTimeMillis);
   }
 
@@ -145,13 +181,18 @@ public class FuseHttpTraceFilter extends HttpTraceFilter {
   }
 
   /**
-   * Updates the response because we add headers *after* the filter has been applied. This way we
-   * ensure that any fields that were created during request handling (e.g. externalQueryId) will
-   * make it onto the response.
+   * Makes sure the audit headers have been added, even if the response has no body, and passes on
+   * anything still buffered by the response writer.
    */
-  private void updateResponse(final HttpServletResponse response) throws IOException {
-    ContentCachingResponseWrapper responseWrapper =
-        WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class);
-    responseWrapper.copyBodyToResponse();
+  private void finishResponse(final HttpServletResponse response) {
+    TeeResponseWrapper responseWrapper =
+        WebUtils.getNativeResponse(response, TeeResponseWrapper.class);
+    if (responseWrapper != null) {
+      responseWrapper.finish();
+      if (log.isDebugEnabled()) {
+        log.debug("Response body starts with: {}",
+            new String(responseWrapper.getCapturedBody(), StandardCharsets.UTF_8));
+      }
+    }
   }
 }
@@ -0,0 +1,202 @@
+package org.galatea.starter.utils.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.util.function.Consumer;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Passes the response body straight through to the client, keeping a copy of only its first bytes
+ * (up to a limit) for tracing. Unlike ContentCachingResponseWrapper, nothing is held back until the
+ * request completes, so large responses start reaching the client as soon as they are written.
+ *
+ * <p>Headers can't be added once the first byte has been sent, so anything that wants to add
+ * headers late in the request can do so in the beforeCommit callback. It is called once, just
+ * before the response is first written, flushed or sent as an error or redirect, or when finish
+ * is called if none of those has happened. The body may be written from another thread (e.g. an
+ * async request), so anything else that tries to commit the response while beforeCommit is running
+ * waits for it to finish.
+ */
+public class TeeResponseWrapper extends HttpServletResponseWrapper {
+
+  private final int captureLimit;
+
+  private final Consumer<HttpServletResponse> beforeCommit;
+
+  private final Object commitLock = new Object();
+
+  private volatile boolean headersCommitted;
+
+  private final ByteArrayOutputStream captured;
+
+  private volatile boolean capturing;
+
+  private ServletOutputStream outputStream;
+
+  private PrintWriter writer;
+
+  /**
+   * Wraps the given response.
+   *
+   * @param response the response to pass the body through to
+   * @param captureLimit the most bytes of the body to keep a copy of
+   * @param beforeCommit called with the wrapped response just before it's committed
+   */
+  public TeeResponseWrapper(final HttpServletResponse response, final int captureLimit,
+      final Consumer<HttpServletResponse> beforeCommit) {
+    super(response);
+    this.captureLimit = captureLimit;
+    this.beforeCommit = beforeCommit;
+    this.captured = new ByteArrayOutputStream(Math.max(0, Math.min(captureLimit, 1024)));
+    this.capturing = captureLimit > 0;
+  }
+
+  @Override
+  public ServletOutputStream getOutputStream() throws IOException {
+    if (outputStream == null) {
+      outputStream = new TeeOutputStream(super.getOutputStream());
+    }
+    return outputStream;
+  }
+
+  @Override
+  public PrintWriter getWriter() throws IOException {
+    if (writer == null) {
+      String encoding = getCharacterEncoding();
+      try {
+        writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), encoding));
+      } catch (UnsupportedEncodingException e) {
+        throw new IllegalStateException("Unsupported response encoding " + encoding, e);
+      }
+    }
+    return writer;
+  }
+
+  @Override
+  public void flushBuffer() throws IOException {
+    commitHeaders();
+    if (writer != null) {
+      writer.flush();
+    }
+    super.flushBuffer();
+  }
+
+  @Override
+  public void sendError(final int sc) throws IOException {
+    commitHeaders();
+    super.sendError(sc);
+  }
+
+  @Override
+  public void sendError(final int sc, final String msg) throws IOException {
+    commitHeaders();
+    super.sendError(sc, msg);
+  }
+
+  @Override
+  public void sendRedirect(final String location) throws IOException {
+    commitHeaders();
+    super.sendRedirect(location);
+  }
+
+  /**
+   * Call beforeCommit if it hasn't been called already, or wait for it if another thread is calling
+   * it.
+   */
+  public void commitHeaders() {
+    if (headersCommitted) {
+      return;
+    }
+    synchronized (commitLock) {
+      if (!headersCommitted) {
+        try {
+          beforeCommit.accept((HttpServletResponse) getResponse());
+        } finally {
+          headersCommitted = true;
+        }
+      }
+    }
+  }
+
+  /**
+   * Pass on anything still held by the writer, and make sure beforeCommit has been called.
+   */
+  public void finish() {
+    commitHeaders();
+    if (writer != null) {
+      writer.flush();
+    }
+  }
+
+  /**
+   * The first bytes of the body, up to the capture limit.
+   */
+  public synchronized byte[] getCapturedBody() {
+    return captured.toByteArray();
+  }
+
+  private void capture(final byte[] bytes, final int off, final int len) {
+    // Once the limit is reached the body just passes through
+    if (!capturing) {
+      return;
+    }
+    synchronized (this) {
+      int remaining = captureLimit - captured.size();
+      captured.write(bytes, off, Math.min(len, remaining));
+      capturing = captured.size() < captureLimit;
+    }
+  }
+
+  private class TeeOutputStream extends ServletOutputStream {
+
+    private final ServletOutputStream delegate;
+
+    TeeOutputStream(final ServletOutputStream delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+      commitHeaders();
+      if (capturing) {
+        capture(new byte[] {(byte) b}, 0, 1);
+      }
+      delegate.write(b);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+      commitHeaders();
+      capture(b, off, len);
+      delegate.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      commitHeaders();
+      delegate.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      commitHeaders();
+      delegate.close();
+    }
+
+    @Override
+    public boolean isReady() {
+      return delegate.isReady();
+    }
+
+    @Override
+    public void setWriteListener(final WriteListener writeListener) {
+      delegate.setWriteListener(writeListener);
+    }
+  }
+}
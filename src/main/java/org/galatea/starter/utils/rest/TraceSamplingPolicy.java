@@ -0,0 +1,94 @@
+package org.galatea.starter.utils.rest;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ThreadLocalRandom;
+import lombok.NonNull;
+import lombok.ToString;
+
+/**
+ * Decides which HTTP requests have their trace recorded. Failed requests (status 400 and above)
+ * are always recorded. Other requests are recorded with the sampling rate of the longest path
+ * prefix that matches them, or the default rate if none does, or not at all if only errors are
+ * traced.
+ */
+@ToString
+public class TraceSamplingPolicy {
+
+  private final double rate;
+
+  private final boolean errorsOnly;
+
+  /** Rates by path prefix, longest prefix first so that the first match is the most specific. */
+  private final Map<String, Double> pathRates = new LinkedHashMap<>();
+
+  /**
+   * Creates a sampling policy.
+   *
+   * @param rate the fraction of successful requests to record, from 0 to 1
+   * @param pathRates rates that override the default for requests whose path starts with the key
+   * @param errorsOnly whether to record failed requests only
+   */
+  public TraceSamplingPolicy(final double rate, @NonNull final Map<String, Double> pathRates,
+      final boolean errorsOnly) {
+    this.rate = rate;
+    this.errorsOnly = errorsOnly;
+    pathRates.entrySet().stream()
+        .sorted(Comparator.comparing((Entry<String, Double> e) -> e.getKey().length()).reversed())
+        .forEach(e -> this.pathRates.put(e.getKey(), e.getValue()));
+  }
+
+  /**
+   * Parse per-path sampling rates written as comma separated prefix=rate pairs, e.g.
+   * "/iex=0.1,/settlementEngine/missions/export=0".
+   *
+   * @param spec the rates to parse; may be empty
+   * @return the rates by path prefix
+   */
+  public static Map<String, Double> parsePathRates(final String spec) {
+    Map<String, Double> rates = new LinkedHashMap<>();
+    for (String pair : spec.split(",")) {
+      if (pair.trim().isEmpty()) {
+        continue;
+      }
+      int separator = pair.lastIndexOf('=');
+      if (separator < 0) {
+        throw new IllegalArgumentException("Expected prefix=rate but was '" + pair + "'");
+      }
+      rates.put(pair.substring(0, separator).trim(),
+          Double.valueOf(pair.substring(separator + 1).trim()));
+    }
+    return rates;
+  }
+
+  /**
+   * Decide whether to record the trace of a request.
+   *
+   * @param path the path of the request
+   * @param status the status of the response
+   * @return true if the trace should be recorded
+   */
+  public boolean shouldRecord(final String path, final int status) {
+    if (status >= 400) {
+      return true;
+    }
+    if (errorsOnly) {
+      return false;
+    }
+    double pathRate = rateFor(path);
+    return pathRate >= 1 || pathRate > 0 && ThreadLocalRandom.current().nextDouble() < pathRate;
+  }
+
+  private double rateFor(final String path) {
+    if (path != null) {
+      for (Entry<String, Double> pathRate : pathRates.entrySet()) {
+        if (path.startsWith(pathRate.getKey())) {
+          return pathRate.getValue();
+        }
+      }
+    }
+    return rate;
+  }
+}
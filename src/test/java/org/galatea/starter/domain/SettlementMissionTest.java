@@ -1,7 +1,13 @@
 package org.galatea.starter.domain;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Set;
 import javax.validation.ConstraintViolation;
 import javax.validation.Validation;
@@ -74,4 +80,44 @@ public class SettlementMissionTest {
     assertEquals(1, constraintViolations.size());
   }
 
+  @Test
+  public void serializationRoundTrip() throws Exception {
+    SettlementMission mission = SettlementMission.builder()
+        .id(42L)
+        .instrument("I")
+        .externalParty("ECP")
+        .direction("DEL")
+        .depot("DTC")
+        .qty(10D)
+        .version(3L).build();
+
+    assertEquals(mission, deserialize(serialize(mission)));
+  }
+
+  @Test
+  public void unsavedMissionRoundTripsWithoutId() throws Exception {
+    SettlementMission mission = SettlementMission.builder()
+        .instrument("I")
+        .externalParty("ECP")
+        .direction("DEL")
+        .depot("DTC")
+        .qty(10D)
+        .version(0L).build();
+
+    assertNull(deserialize(serialize(mission)).getId());
+  }
+
+  private static byte[] serialize(final SettlementMission mission) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(mission);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static SettlementMission deserialize(final byte[] bytes) throws Exception {
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+      return (SettlementMission) in.readObject();
+    }
+  }
 }
@@ -0,0 +1,63 @@
+package org.galatea.starter.entrypoint;
+
+import static java.util.Collections.singleton;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
+import org.junit.Test;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+public class ApiErrorMapperTest {
+
+  private final ApiErrorMapper mapper = new ApiErrorMapper();
+
+  @Test
+  public void testMapsEntityNotFound() {
+    assertEquals(HttpStatus.NOT_FOUND,
+        mapper.toApiError(new EntityNotFoundException(Object.class, "id")).getStatus());
+  }
+
+  @Test
+  public void testMapsConstraintViolationToBadRequest() {
+    ConstraintViolation<String> violation = mock(ConstraintViolation.class);
+    when(violation.getMessage()).thenReturn("qty must be positive");
+
+    ApiError error = mapper.toApiError(new ConstraintViolationException(singleton(violation)));
+
+    assertEquals(HttpStatus.BAD_REQUEST, error.getStatus());
+    assertEquals("qty must be positive. ", error.getMessage());
+  }
+
+  @Test
+  public void testMapsOptimisticLockToConflict() {
+    assertEquals(HttpStatus.CONFLICT, mapper.toApiError(
+        new ObjectOptimisticLockingFailureException(Object.class, "id")).getStatus());
+  }
+
+  @Test
+  public void testHidesDataAccessDetails() {
+    ApiError error = mapper.toApiError(new DataAccessException("secret table name") {});
+
+    assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, error.getStatus());
+    assertEquals("An internal application error occurred.", error.getMessage());
+  }
+
+  @Test
+  public void testMapsTaskRejectedToTooManyRequests() {
+    assertEquals(HttpStatus.TOO_MANY_REQUESTS,
+        mapper.toApiError(new TaskRejectedException("full")).getStatus());
+  }
+
+  @Test
+  public void testMapsUnexpectedErrorToInternalError() {
+    assertEquals(HttpStatus.INTERNAL_SERVER_ERROR,
+        mapper.toApiError(new IllegalStateException("bug")).getStatus());
+  }
+}
@@ -15,6 +15,7 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
@@ -23,6 +24,8 @@ import org.springframework.test.web.servlet.MockMvc;
 @Slf4j
 // We don't load the entire spring application context for this test.
 @WebMvcTest(HalRestController.class)
+// RestExceptionHandler is loaded with the controller, and needs its ApiErrorMapper
+@Import(ApiErrorMapper.class)
 // Use this runner since we want to parameterize certain tests.
 // See runner's javadoc for more usage.
 @RunWith(JUnitParamsRunner.class)
@@ -0,0 +1,112 @@
+package org.galatea.starter.entrypoint;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import junitparams.JUnitParamsRunner;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.utils.FuseHttpTraceRepository;
+import org.galatea.starter.utils.HttpTraceQuery;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.trace.http.HttpTrace;
+import org.springframework.boot.actuate.trace.http.HttpTrace.Request;
+import org.springframework.boot.actuate.trace.http.HttpTrace.Response;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+@RequiredArgsConstructor
+@Slf4j
+// We don't load the entire spring application context for this test.
+@WebMvcTest(HttpTraceRestController.class)
+// RestExceptionHandler is loaded with the controller, and needs its ApiErrorMapper
+@Import(ApiErrorMapper.class)
+// Use this runner since we want to parameterize certain tests.
+// See runner's javadoc for more usage.
+@RunWith(JUnitParamsRunner.class)
+public class HttpTraceRestControllerTest extends ASpringTest {
+
+  @Autowired
+  private MockMvc mvc;
+
+  @MockBean
+  private FuseHttpTraceRepository mockTraceRepository;
+
+  @Test
+  public void testFindTraces() throws Exception {
+    ArgumentCaptor<HttpTraceQuery> query = ArgumentCaptor.forClass(HttpTraceQuery.class);
+    given(mockTraceRepository.find(any())).willReturn(Collections.singletonList(trace()));
+
+    this.mvc.perform(get("/trace/requests").param("status", "404")
+        .param("pathPrefix", "/settlementEngine").param("from", "2019-01-01T09:00:00Z")
+        .param("limit", "10").accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].response.status", is(404)));
+
+    verify(mockTraceRepository).find(query.capture());
+    assertEquals(Integer.valueOf(404), query.getValue().getStatus());
+    assertEquals("/settlementEngine", query.getValue().getPathPrefix());
+    assertEquals(Instant.parse("2019-01-01T09:00:00Z"), query.getValue().getFrom());
+    assertEquals(10, query.getValue().getLimit());
+  }
+
+  @Test
+  public void testFindSlowestTraces() throws Exception {
+    given(mockTraceRepository.findSlowest(any(), eq(5)))
+        .willReturn(Collections.singletonList(trace()));
+
+    this.mvc.perform(get("/trace/requests").param("slowest", "5")
+        .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].timeTaken", is(1500)));
+  }
+
+  @Test
+  public void testFindTracesStripsCredentials() throws Exception {
+    Map<String, List<String>> requestHeaders = new HashMap<>();
+    requestHeaders.put("Authorization", Collections.singletonList("Bearer secret"));
+    requestHeaders.put("cookie", Collections.singletonList("JSESSIONID=secret"));
+    requestHeaders.put("Accept", Collections.singletonList("application/json"));
+    Request request = new Request("GET",
+        URI.create("http://localhost/settlementEngine/mission/1"), requestHeaders, null);
+    Response response = new Response(200,
+        Collections.singletonMap("Set-Cookie", Collections.singletonList("JSESSIONID=secret")));
+    given(mockTraceRepository.find(any())).willReturn(Collections.singletonList(
+        new HttpTrace(request, response, Instant.parse("2019-01-01T09:00:01Z"), null, null,
+            10L)));
+
+    this.mvc.perform(get("/trace/requests").accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].request.headers.Authorization").doesNotExist())
+        .andExpect(jsonPath("$[0].request.headers.cookie").doesNotExist())
+        .andExpect(jsonPath("$[0].request.headers.Accept[0]", is("application/json")))
+        .andExpect(jsonPath("$[0].response.headers['Set-Cookie']").doesNotExist());
+  }
+
+  private static HttpTrace trace() {
+    Request request = new Request("GET",
+        URI.create("http://localhost/settlementEngine/mission/1"), Collections.emptyMap(), null);
+    return new HttpTrace(request, new Response(404, Collections.emptyMap()),
+        Instant.parse("2019-01-01T09:00:01Z"), null, null, 1500L);
+  }
+}
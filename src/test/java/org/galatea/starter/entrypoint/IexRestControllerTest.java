@@ -1,7 +1,10 @@
 package org.galatea.starter.entrypoint;
 
 import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.math.BigDecimal;
@@ -16,6 +19,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
@@ -55,6 +59,47 @@ public class IexRestControllerTest extends ASpringTest {
         .andReturn();
   }
 
+  @Test
+  public void testGetSymbolsEndpointNotModified() throws Exception {
+    MvcResult result = this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get("/iex/symbols")
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isOk())
+        .andExpect(header().exists(HttpHeaders.ETAG))
+        .andReturn();
+
+    // A client that already has this version of the list shouldn't be sent it again
+    this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get("/iex/symbols")
+            .header(HttpHeaders.IF_NONE_MATCH, result.getResponse().getHeader(HttpHeaders.ETAG))
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isNotModified());
+  }
+
+  @Test
+  public void testSearchSymbolsByPrefix() throws Exception {
+    this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders
+            .get("/iex/symbols/search?prefix=aa")
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.length()", is(2)))
+        .andExpect(jsonPath("$[0].symbol", is("AA")))
+        .andExpect(jsonPath("$[1].symbol", is("AAAU")));
+  }
+
+  @Test
+  public void testSearchSymbolsByTypeAndEnabled() throws Exception {
+    this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders
+            .get("/iex/symbols/search?type=cs&enabled=true")
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.length()", is(2)))
+        .andExpect(jsonPath("$[0].symbol", is("A")))
+        .andExpect(jsonPath("$[1].symbol", is("AA")));
+  }
+
   @Test
   public void testGetLastTradedPrice() throws Exception {
 
@@ -64,10 +109,31 @@ public class IexRestControllerTest extends ASpringTest {
             // This URL will be hit by the MockMvc client. The result is configured in the file
             // src/test/resources/wiremock/mappings/mapping-lastTradedPrice.json
             .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    this.mvc.perform(asyncDispatch(result))
         .andExpect(status().isOk())
         .andExpect(jsonPath("$[0].symbol", is("FB")))
-        .andExpect(jsonPath("$[0].price").value(new BigDecimal("186.34")))
+        .andExpect(jsonPath("$[0].price").value(new BigDecimal("186.34")));
+  }
+
+  @Test
+  public void testGetLastTradedPriceReleasesRequestWhileIexResponds() throws Exception {
+
+    // IEX takes a second to respond here (see mapping-lastTradedPriceDelayed.json), but the
+    // request is handed off rather than waiting on it
+    MvcResult result = this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders
+            .get("/iex/lastTradedPrice?symbols=MSFT")
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(request().asyncStarted())
         .andReturn();
+
+    this.mvc.perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].symbol", is("MSFT")))
+        .andExpect(jsonPath("$[0].price").value(new BigDecimal("138.89")));
   }
 
   @Test
@@ -77,9 +143,12 @@ public class IexRestControllerTest extends ASpringTest {
         org.springframework.test.web.servlet.request.MockMvcRequestBuilders
             .get("/iex/lastTradedPrice?symbols=")
             .accept(MediaType.APPLICATION_JSON_VALUE))
-        .andExpect(status().isOk())
-        .andExpect(jsonPath("$", is(Collections.emptyList())))
+        .andExpect(request().asyncStarted())
         .andReturn();
+
+    this.mvc.perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", is(Collections.emptyList())));
   }
 
   @Test
@@ -99,11 +168,14 @@ public class IexRestControllerTest extends ASpringTest {
                     org.springframework.test.web.servlet.request.MockMvcRequestBuilders
                             .get("/iex/historicalPrice?symbol=AAPL&date=20181214")
                             .accept(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    this.mvc.perform(asyncDispatch(result))
             .andExpect(status().isOk())
             .andExpect(jsonPath("$[0].symbol", is("AAPL")))
             .andExpect(jsonPath("$[0].open").value(new BigDecimal("42.25")))
-            .andExpect(jsonPath("$[0].close").value(new BigDecimal("41.37")))
-            .andReturn();
+            .andExpect(jsonPath("$[0].close").value(new BigDecimal("41.37")));
   }
 
   @Test
@@ -112,9 +184,12 @@ public class IexRestControllerTest extends ASpringTest {
                     org.springframework.test.web.servlet.request.MockMvcRequestBuilders
                             .get("/iex/historicalPrice?symbol=&date=20181214")
                             .accept(MediaType.APPLICATION_JSON_VALUE))
-            .andExpect(status().isOk())
-            .andExpect(jsonPath("$", is(Collections.emptyList())))
+            .andExpect(request().asyncStarted())
             .andReturn();
+
+    this.mvc.perform(asyncDispatch(result1))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", is(Collections.emptyList())));
   }
 
   @Test
@@ -143,11 +218,14 @@ public class IexRestControllerTest extends ASpringTest {
                     org.springframework.test.web.servlet.request.MockMvcRequestBuilders
                             .get("/iex/historicalPrice?symbol=AAPL&range=ytd")
                             .accept(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    this.mvc.perform(asyncDispatch(result))
             .andExpect(status().isOk())
             .andExpect(jsonPath("$[0].symbol", is("AAPL")))
             .andExpect(jsonPath("$[0].open").value(new BigDecimal("42.25")))
-            .andExpect(jsonPath("$[0].close").value(new BigDecimal("41.37")))
-            .andReturn();
+            .andExpect(jsonPath("$[0].close").value(new BigDecimal("41.37")));
   }
 
   @Test
@@ -156,9 +234,12 @@ public class IexRestControllerTest extends ASpringTest {
                     org.springframework.test.web.servlet.request.MockMvcRequestBuilders
                             .get("/iex/historicalPrice?symbol=&range=ytd")
                             .accept(MediaType.APPLICATION_JSON_VALUE))
-            .andExpect(status().isOk())
-            .andExpect(jsonPath("$", is(Collections.emptyList())))
+            .andExpect(request().asyncStarted())
             .andReturn();
+
+    this.mvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", is(Collections.emptyList())));
   }
 
   @Test
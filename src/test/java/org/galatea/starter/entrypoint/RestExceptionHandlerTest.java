@@ -22,7 +22,7 @@ public class RestExceptionHandlerTest {
 
   @Before
   public void setUp() {
-    handler = new RestExceptionHandler();
+    handler = new RestExceptionHandler(new ApiErrorMapper());
   }
 
   @Test
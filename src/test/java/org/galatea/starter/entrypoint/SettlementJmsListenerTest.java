@@ -1,9 +1,17 @@
 package org.galatea.starter.entrypoint;
 
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import javax.jms.TextMessage;
@@ -14,6 +22,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.ASpringTest;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
+import org.galatea.starter.service.ProcessedMessageIndex;
 import org.galatea.starter.service.SettlementService;
 import org.galatea.starter.testutils.TestDataGenerator;
 import org.junit.Test;
@@ -38,6 +48,9 @@ public class SettlementJmsListenerTest extends ASpringTest {
   @MockBean
   private SettlementService mockSettlementService;
 
+  @MockBean
+  private ProcessedMessageIndex mockProcessedMessages;
+
   @Value("${jms.agreement-queue-json}")
   protected String jsonQueueName;
 
@@ -71,7 +84,8 @@ public class SettlementJmsListenerTest extends ASpringTest {
       return msg;
     });
 
-    verify(mockSettlementService, timeout(10000)).spawnMissions(expectedAgreements);
+    verify(mockSettlementService, timeout(10000))
+        .spawnMissions(eq(expectedAgreements), anyCollection());
   }
 
   @Test
@@ -87,6 +101,39 @@ public class SettlementJmsListenerTest extends ASpringTest {
 
     jmsTemplate.convertAndSend(protoQueueName, message.toByteArray());
 
-    verify(mockSettlementService, timeout(10000)).spawnMissions(agreements);
+    verify(mockSettlementService, timeout(10000))
+        .spawnMissions(eq(agreements), anyCollection());
+  }
+
+  @Test
+  @DirtiesContext
+  public void testSettleAgreementBatchProto() {
+    TradeAgreementProtoMessages messages = TradeAgreementProtoMessages.newBuilder()
+        .addMessage(TestDataGenerator.defaultTradeAgreementProtoMessageData().build())
+        .addMessage(TestDataGenerator.defaultTradeAgreementProtoMessageData()
+            .setInstrument("MSFT").build())
+        .build();
+    List<TradeAgreement> agreements = Arrays.asList(
+        TestDataGenerator.defaultTradeAgreementData().build(),
+        TestDataGenerator.defaultTradeAgreementData().instrument("MSFT").build());
+
+    log.info("Agreement batch to put on queue {}", messages);
+
+    jmsTemplate.convertAndSend(protoQueueName, messages.toByteArray());
+
+    verify(mockSettlementService, timeout(10000))
+        .spawnMissions(eq(agreements), anyCollection());
+  }
+
+  @Test
+  @DirtiesContext
+  public void testDropProcessedMessage() {
+    given(mockProcessedMessages.isProcessed(anyString(), anyBoolean())).willReturn(true);
+
+    jmsTemplate.convertAndSend(protoQueueName,
+        TestDataGenerator.defaultTradeAgreementProtoMessageData().build().toByteArray());
+
+    verify(mockProcessedMessages, timeout(10000)).isProcessed(anyString(), anyBoolean());
+    verify(mockSettlementService, never()).spawnMissions(anyList(), anyCollection());
   }
 }
@@ -3,12 +3,20 @@ package org.galatea.starter.entrypoint;
 import static java.util.Collections.singletonList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.google.common.collect.Sets;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Optional;
 import junitparams.JUnitParamsRunner;
 import lombok.RequiredArgsConstructor;
@@ -18,6 +26,7 @@ import org.galatea.starter.ProtoMessageTranslationConfig;
 import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessages;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementResponseProtoMessage;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
@@ -42,7 +51,8 @@ import org.springframework.test.web.servlet.MvcResult;
 // We don't load the entire spring application context for this test.
 @WebMvcTest(SettlementProtoRestController.class)
 // Import Beans from Configuration, enabling them to be Autowired
-@Import({ProtoMessageTranslationConfig.class, RestExceptionHandler.class})
+@Import({ProtoMessageTranslationConfig.class, RestExceptionHandler.class,
+    ApiErrorMapper.class})
 // Use this runner since we want to parameterize certain tests.
 // See runner's javadoc for more usage.
 @RunWith(JUnitParamsRunner.class)
@@ -116,4 +126,45 @@ public class SettlementProtoRestControllerTest extends ASpringTest {
             .accept(APPLICATION_X_PROTOBUF))
         .andExpect(status().is4xxClientError());
   }
+
+  @Test
+  public void testGetMissions() throws Exception {
+    SettlementMission mission1 = TestDataGenerator.defaultSettlementMissionData().id(1L).build();
+    SettlementMission mission2 = TestDataGenerator.defaultSettlementMissionData().id(2L).build();
+
+    given(this.mockSettlementService.findMissions(Arrays.asList(1L, 2L)))
+        .willReturn(Arrays.asList(mission1, mission2));
+
+    MvcResult result = this.mvc.perform(
+        get("/settlementEngine/missions?ids=1,2&requestId=1234")
+            .accept(APPLICATION_X_PROTOBUF)).andExpect(status().isOk()).andReturn();
+
+    SettlementMissionProtoMessages messages = SettlementMissionProtoMessages
+        .parseFrom(result.getResponse().getContentAsByteArray());
+    assertEquals(Arrays.asList(settlementMissionTranslator.translate(mission1),
+        settlementMissionTranslator.translate(mission2)), messages.getMessageList());
+  }
+
+  @Test
+  public void testExportMissions() throws Exception {
+    SettlementMission mission1 = TestDataGenerator.defaultSettlementMissionData().id(1L).build();
+    SettlementMission mission2 = TestDataGenerator.defaultSettlementMissionData().id(2L).build();
+
+    given(this.mockSettlementService.streamMissions(isNull(), isNull(), isNull(), anyInt()))
+        .willReturn(Arrays.asList(mission1, mission2));
+
+    MvcResult result = this.mvc.perform(
+        get("/settlementEngine/missions/export?requestId=1234").accept(APPLICATION_X_PROTOBUF))
+        .andExpect(request().asyncStarted()).andReturn();
+
+    byte[] content = this.mvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+        .andReturn().getResponse().getContentAsByteArray();
+
+    InputStream in = new ByteArrayInputStream(content);
+    assertEquals(settlementMissionTranslator.translate(mission1),
+        SettlementMissionProtoMessage.parseDelimitedFrom(in));
+    assertEquals(settlementMissionTranslator.translate(mission2),
+        SettlementMissionProtoMessage.parseDelimitedFrom(in));
+    assertNull(SettlementMissionProtoMessage.parseDelimitedFrom(in));
+  }
 }
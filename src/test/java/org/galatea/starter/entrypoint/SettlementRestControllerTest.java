@@ -7,8 +7,10 @@ import static org.galatea.starter.MvcConfig.TEXT_CSV;
 import static org.hamcrest.Matchers.hasXPath;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 import com.fasterxml.jackson.databind.JsonNode;
@@ -31,12 +33,17 @@ import junitparams.JUnitParamsRunner;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.ASpringTest;
 import org.galatea.starter.MessageTranslationConfig;
+import org.galatea.starter.domain.SettlementJob;
 import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.SettlementMissionBatchResult;
 import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionList;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionMessage;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionMessages;
 import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
 import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessages;
+import org.galatea.starter.service.SettlementJobService;
 import org.galatea.starter.service.SettlementService;
 import org.galatea.starter.testutils.TestDataGenerator;
 import org.galatea.starter.testutils.XlsxComparator;
@@ -57,6 +64,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.http.HttpStatus;
@@ -69,7 +77,7 @@ import org.springframework.web.accept.ContentNegotiationManager;
 import org.springframework.web.accept.ParameterContentNegotiationStrategy;
 
 @Slf4j
-@Import({MessageTranslationConfig.class})
+@Import({MessageTranslationConfig.class, RestExceptionHandler.class, ApiErrorMapper.class})
 @RunWith(JUnitParamsRunner.class)
 public class SettlementRestControllerTest
     extends ASpringTest {
@@ -89,6 +97,21 @@ public class SettlementRestControllerTest
   @Value("${mvc.updateMissionPath}")
   private String updateMissionPath;
 
+  @Value("${mvc.exportMissionsPath}")
+  private String exportMissionsPath;
+
+  @Value("${mvc.updateMissionsPath}")
+  private String updateMissionsPath;
+
+  @Value("${mvc.deleteMissionsPath}")
+  private String deleteMissionsPath;
+
+  @Value("${mvc.settlementJobsPath}")
+  private String settlementJobsPath;
+
+  @Value("${mvc.getSettlementJobPath}")
+  private String getSettlementJobPath;
+
   @Autowired
   private ITranslator<TradeAgreementMessages, List<TradeAgreement>> tradeAgreementTranslator;
 
@@ -101,6 +124,9 @@ public class SettlementRestControllerTest
   @MockBean
   private SettlementService mockSettlementService;
 
+  @MockBean
+  private SettlementJobService mockSettlementJobService;
+
   @Autowired
   private SettlementRestController settlementRestController;
 
@@ -136,12 +162,17 @@ public class SettlementRestControllerTest
             addPlaceholderValue("mvc.updateMissionPath", updateMissionPath).
             addPlaceholderValue("mvc.getMissionsPath", getMissionsPath).
             addPlaceholderValue("mvc.getMissionPath", getMissionPath).
+            addPlaceholderValue("mvc.exportMissionsPath", exportMissionsPath).
+            addPlaceholderValue("mvc.updateMissionsPath", updateMissionsPath).
+            addPlaceholderValue("mvc.deleteMissionsPath", deleteMissionsPath).
+            addPlaceholderValue("mvc.settlementJobsPath", settlementJobsPath).
+            addPlaceholderValue("mvc.getSettlementJobPath", getSettlementJobPath).
             setContentNegotiationManager(manager).
             setMessageConverters(new MappingJackson2HttpMessageConverter(),
                 new Jaxb2RootElementHttpMessageConverter(),
                 new SettlementMissionCsvConverter(),
                 new SettlementMissionXlsxConverter()).
-            setControllerAdvice(new RestExceptionHandler()));
+            setControllerAdvice(new RestExceptionHandler(new ApiErrorMapper())));
   }
 
   @Test
@@ -393,6 +424,92 @@ public class SettlementRestControllerTest
     assertTrue(XlsxComparator.equals(expectedXlsx, response.asByteArray()));
   }
 
+  @Test
+  public void testExportMissions_CSV() throws Exception {
+    SettlementMission mission1 = SettlementMission.builder()
+        .id(1L).instrument("ABC").externalParty("EXT-1").depot("DEPOT-1").direction("REC")
+        .qty(100.0).version(0L).build();
+    SettlementMission mission2 = SettlementMission.builder()
+        .id(2L).instrument("ABC").externalParty("EXT-1").depot("DEPOT-1").direction("REC")
+        .qty(100.0).version(0L).build();
+
+    BDDMockito.given(this.mockSettlementService.streamMissions(
+        BDDMockito.eq("DEPOT-1"), BDDMockito.isNull(), BDDMockito.isNull(),
+        BDDMockito.anyInt()))
+        .willReturn(Arrays.asList(mission1, mission2));
+
+    String expectedCsv = readData("SettlementMissions.csv");
+
+    given()
+        .log().ifValidationFails()
+        .when()
+        .async()
+        .get("/settlementEngine/missions/export?depot=DEPOT-1&format=csv&requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .contentType("text/csv")
+        .body(is(expectedCsv));
+  }
+
+  @Test
+  public void testExportMissions_JSON() {
+    SettlementMission mission1 = TestDataGenerator.defaultSettlementMissionData()
+        .id(1L).build();
+    SettlementMission mission2 = TestDataGenerator.defaultSettlementMissionData()
+        .id(2L).build();
+
+    BDDMockito.given(this.mockSettlementService.streamMissions(
+        BDDMockito.isNull(), BDDMockito.eq(1L), BDDMockito.eq(2L), BDDMockito.anyInt()))
+        .willReturn(Arrays.asList(mission1, mission2));
+
+    given()
+        .log().ifValidationFails()
+        .when()
+        .async()
+        .get("/settlementEngine/missions/export?fromId=1&toId=2&format=json&requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .contentType(MediaType.APPLICATION_JSON_VALUE)
+        .body("id", is(Arrays.asList(1, 2)))
+        .body("depot", is(Arrays.asList(mission1.getDepot(), mission2.getDepot())));
+  }
+
+  @Test
+  public void testExportMissions_XLSX() throws Exception {
+    SettlementMission mission1 = SettlementMission.builder()
+        .id(1L).instrument("ABC").externalParty("EXT-1").depot("DEPOT-1").direction("REC")
+        .qty(100.0).version(0L).build();
+    SettlementMission mission2 = SettlementMission.builder()
+        .id(2L).instrument("ABC").externalParty("EXT-1").depot("DEPOT-1").direction("REC")
+        .qty(100.0).version(0L).build();
+
+    BDDMockito.given(this.mockSettlementService.streamMissions(
+        BDDMockito.eq("DEPOT-1"), BDDMockito.isNull(), BDDMockito.isNull(),
+        BDDMockito.anyInt()))
+        .willReturn(Arrays.asList(mission1, mission2));
+
+    byte[] expectedXlsx = readBytes("SettlementMissions.xlsx");
+
+    MockMvcResponse response =
+    given()
+        .log().ifValidationFails()
+        .when()
+        .async()
+        .get("/settlementEngine/missions/export?depot=DEPOT-1&format=xlsx&requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .contentType("application/vnd.ms-excel")
+        .extract()
+        .response();
+
+    // The export is written by the streaming serializer, but should hold the same spreadsheet as
+    // the one built in memory for GET /missions
+    assertTrue(XlsxComparator.equals(expectedXlsx, response.asByteArray()));
+  }
+
   @Test
   public void testIncorrectlyFormattedAgreement() {
     String expectedMessage = "Incorrectly formatted message.  Please consult the documentation.";
@@ -520,6 +637,184 @@ public class SettlementRestControllerTest
         .statusCode(HttpStatus.NOT_FOUND.value());
   }
 
+  @Test
+  public void testUpdateMissions() throws Exception {
+    SettlementMissionMessages messages = SettlementMissionMessages.builder()
+        .mission(settlementMissionTranslator.translate(
+            TestDataGenerator.defaultSettlementMissionData().id(1L).build()))
+        .mission(settlementMissionTranslator.translate(
+            TestDataGenerator.defaultSettlementMissionData().id(2L).build()))
+        .build();
+
+    when(mockSettlementService.updateMissions(anyList())).thenReturn(
+        SettlementMissionBatchResult.builder().succeededId(1L)
+            .failure(2L, new ObjectOptimisticLockingFailureException(SettlementMission.class, 2L))
+            .build());
+
+    given()
+        .log().ifValidationFails()
+        .contentType(MediaType.APPLICATION_JSON_VALUE)
+        .body(objectMapper.writeValueAsString(messages))
+        .accept(MediaType.APPLICATION_JSON_VALUE)
+        .when()
+        .put("/settlementEngine/missions?requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .body("succeededIds", is(singletonList(1)))
+        .body("failures[0].id", is(2))
+        .body("failures[0].status", is(HttpStatus.CONFLICT.name()));
+  }
+
+  @Test
+  public void testUpdateMissionsWithoutId() throws Exception {
+    SettlementMissionMessages messages = SettlementMissionMessages.builder()
+        .mission(settlementMissionTranslator.translate(
+            TestDataGenerator.defaultSettlementMissionData().id(1L).build()))
+        .mission(settlementMissionTranslator.translate(
+            TestDataGenerator.defaultSettlementMissionData().id(null).build()))
+        .build();
+
+    given()
+        .log().ifValidationFails()
+        .contentType(MediaType.APPLICATION_JSON_VALUE)
+        .body(objectMapper.writeValueAsString(messages))
+        .accept(MediaType.APPLICATION_JSON_VALUE)
+        .when()
+        .put("/settlementEngine/missions?requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.BAD_REQUEST.value());
+
+    verifyZeroInteractions(mockSettlementService);
+  }
+
+  @Test
+  public void testDeleteMissions() {
+    when(mockSettlementService.deleteMissions(Arrays.asList(1L, 2L))).thenReturn(
+        SettlementMissionBatchResult.builder().succeededId(1L)
+            .failure(2L, new EntityNotFoundException(SettlementMission.class, "2"))
+            .build());
+
+    given()
+        .log().ifValidationFails()
+        .accept(MediaType.APPLICATION_JSON_VALUE)
+        .when()
+        .delete("/settlementEngine/missions?ids=1,2&requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .body("succeededIds", is(singletonList(1)))
+        .body("failures[0].id", is(2))
+        .body("failures[0].status", is(HttpStatus.NOT_FOUND.name()));
+  }
+
+  @Test
+  public void testSubmitSettlementJob() throws Exception {
+    TradeAgreementMessages messages = TradeAgreementMessages.builder()
+        .agreement(TradeAgreementMessage.builder().instrument("IBM").internalParty("INT-1")
+            .externalParty("EXT-1").buySell("B").qty(100d).build())
+        .build();
+
+    BDDMockito.given(mockSettlementJobService.submit(toTradeAgreements(messages)))
+        .willReturn(new SettlementJob("job-1", 1));
+
+    given()
+        .log().ifValidationFails()
+        .contentType(MediaType.APPLICATION_JSON_VALUE)
+        .body(objectMapper.writeValueAsString(messages))
+        .accept(MediaType.APPLICATION_JSON_VALUE)
+        .when()
+        .post("/settlementEngine/jobs?requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.ACCEPTED.value())
+        .header("Location", "/settlementEngine/jobs/job-1")
+        .body("jobId", is("job-1"))
+        .body("status", is("QUEUED"))
+        .body("agreementCount", is(1));
+  }
+
+  @Test
+  public void testSubmitSettlementJobWhenQueueIsFull() throws Exception {
+    TradeAgreementMessages messages = TradeAgreementMessages.builder()
+        .agreement(TradeAgreementMessage.builder().instrument("IBM").internalParty("INT-1")
+            .externalParty("EXT-1").buySell("B").qty(100d).build())
+        .build();
+
+    BDDMockito.given(mockSettlementJobService.submit(anyList()))
+        .willThrow(new TaskRejectedException("queue full"));
+
+    given()
+        .log().ifValidationFails()
+        .contentType(MediaType.APPLICATION_JSON_VALUE)
+        .body(objectMapper.writeValueAsString(messages))
+        .accept(MediaType.APPLICATION_JSON_VALUE)
+        .when()
+        .post("/settlementEngine/jobs?requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.TOO_MANY_REQUESTS.value());
+  }
+
+  @Test
+  public void testGetSettlementJob() {
+    SettlementJob job = new SettlementJob("job-1", 2);
+    job.started();
+    job.settled(2, Sets.newLinkedHashSet(Arrays.asList(1L, 2L)));
+    job.completed();
+
+    BDDMockito.given(mockSettlementJobService.findJob("job-1")).willReturn(Optional.of(job));
+
+    given()
+        .log().ifValidationFails()
+        .accept(MediaType.APPLICATION_JSON_VALUE)
+        .when()
+        .get("/settlementEngine/jobs/job-1?requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .body("status", is("COMPLETED"))
+        .body("settledAgreementCount", is(2))
+        .body("spawnedMissions",
+            is(Arrays.asList("/settlementEngine/mission/1", "/settlementEngine/mission/2")));
+  }
+
+  @Test
+  public void testGetFailedSettlementJob() {
+    SettlementJob job = new SettlementJob("job-1", 2);
+    job.started();
+    job.failed(new IllegalStateException("Connection refused: db-host:5432"));
+
+    BDDMockito.given(mockSettlementJobService.findJob("job-1")).willReturn(Optional.of(job));
+
+    // The failure is reported like it would be to a synchronous request, without its details
+    given()
+        .log().ifValidationFails()
+        .accept(MediaType.APPLICATION_JSON_VALUE)
+        .when()
+        .get("/settlementEngine/jobs/job-1?requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .body("status", is("FAILED"))
+        .body("error", is("An internal application error occurred."));
+  }
+
+  @Test
+  public void testGetSettlementJobNotFound() {
+    BDDMockito.given(mockSettlementJobService.findJob("job-1")).willReturn(Optional.empty());
+
+    given()
+        .log().ifValidationFails()
+        .accept(MediaType.APPLICATION_JSON_VALUE)
+        .when()
+        .get("/settlementEngine/jobs/job-1?requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.NOT_FOUND.value());
+  }
+
   @Configuration
   @Import(SettlementRestController.class)
   @ConditionalOnNotWebApplication
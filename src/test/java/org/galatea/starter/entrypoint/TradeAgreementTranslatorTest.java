@@ -2,12 +2,18 @@ package org.galatea.starter.entrypoint;
 
 import static org.junit.Assert.assertEquals;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.ASpringTest;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
 import org.galatea.starter.testutils.TestDataGenerator;
 import org.galatea.starter.utils.translation.ITranslator;
 import org.galatea.starter.utils.translation.TranslationException;
@@ -16,7 +22,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
 /**
- * Tests the implementation of ITranslator&lt;byte[], TradeAgreement&gt;
+ * Tests the implementations of ITranslator&lt;byte[], TradeAgreement&gt; and
+ * ITranslator&lt;InputStream, List&lt;TradeAgreement&gt;&gt;
  */
 @Slf4j
 @ToString
@@ -27,6 +34,9 @@ public class TradeAgreementTranslatorTest extends ASpringTest {
   @Autowired
   protected ITranslator<byte[], TradeAgreement> translator;
 
+  @Autowired
+  protected ITranslator<InputStream, List<TradeAgreement>> streamTranslator;
+
   @Test
   public void translateGoodMessage() {
     TradeAgreementProtoMessage message
@@ -43,4 +53,39 @@ public class TradeAgreementTranslatorTest extends ASpringTest {
     byte[] nullBuffer = new byte[] {1, 2, 3, 4, 5, 6};
     translator.translate(nullBuffer);
   }
+
+  @Test
+  public void translateSingleMessageStream() {
+    TradeAgreementProtoMessage message
+        = TestDataGenerator.defaultTradeAgreementProtoMessageData().build();
+
+    List<TradeAgreement> result =
+        streamTranslator.translate(new ByteArrayInputStream(message.toByteArray()));
+    assertEquals(Collections.singletonList(TestDataGenerator.defaultTradeAgreementData().build()),
+        result);
+  }
+
+  @Test
+  public void translateBatchStream() {
+    TradeAgreementProtoMessages messages = TradeAgreementProtoMessages.newBuilder()
+        .addMessage(TestDataGenerator.defaultTradeAgreementProtoMessageData().build())
+        .addMessage(TestDataGenerator.defaultTradeAgreementProtoMessageData().setQty(200).build())
+        .build();
+
+    List<TradeAgreement> result =
+        streamTranslator.translate(new ByteArrayInputStream(messages.toByteArray()));
+    assertEquals(Arrays.asList(TestDataGenerator.defaultTradeAgreementData().build(),
+        TestDataGenerator.defaultTradeAgreementData().qty(200d).build()), result);
+  }
+
+  @Test
+  public void translateEmptyStream() {
+    assertEquals(Collections.emptyList(),
+        streamTranslator.translate(new ByteArrayInputStream(new byte[0])));
+  }
+
+  @Test(expected = TranslationException.class)
+  public void translateBadStream() {
+    streamTranslator.translate(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5, 6}));
+  }
 }
@@ -0,0 +1,193 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import org.galatea.starter.domain.IexHistoricalPrice;
+import org.galatea.starter.domain.IexHistoricalPriceCoverage;
+import org.galatea.starter.domain.rpsy.IIexHistoricalPriceCoverageRpsy;
+import org.galatea.starter.domain.rpsy.IIexHistoricalPriceRpsy;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class IexHistoricalPriceStoreTest {
+
+  private static final LocalDate TODAY = LocalDate.of(2026, 10, 17);
+
+  private IexClient mockIexClient;
+
+  private IIexHistoricalPriceRpsy mockPriceRpsy;
+
+  private IIexHistoricalPriceCoverageRpsy mockCoverageRpsy;
+
+  private IexHistoricalPriceStore store;
+
+  @Before
+  public void setup() {
+    mockIexClient = mock(IexClient.class);
+    mockPriceRpsy = mock(IIexHistoricalPriceRpsy.class);
+    mockCoverageRpsy = mock(IIexHistoricalPriceCoverageRpsy.class);
+    Clock clock = Clock.fixed(TODAY.atTime(15, 0).toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+    store = new IexHistoricalPriceStore(mockIexClient, mockPriceRpsy, mockCoverageRpsy,
+        new TransactionTemplate(mock(PlatformTransactionManager.class)),
+        new ConcurrentMapCacheManager(IexHistoricalPriceStore.EMPTY_DAYS_CACHE_NAME), clock);
+  }
+
+  @Test
+  public void testRangeWithNothingStoredIsFetchedInFull() {
+    IexHistoricalPrice yesterday = price(TODAY.minusDays(1));
+    IexHistoricalPrice today = price(TODAY);
+    given(mockCoverageRpsy.findById("AAPL")).willReturn(Optional.empty());
+    given(mockIexClient.getHistoricalPriceForRange("AAPL", "1y"))
+        .willReturn(Arrays.asList(yesterday, today));
+
+    List<IexHistoricalPrice> result = store.getPricesForRange("aapl", "1y");
+
+    // Today's bar is still changing, so it isn't stored or returned
+    assertEquals(Collections.singletonList(yesterday), result);
+    verify(mockPriceRpsy).saveAll(Collections.singletonList(yesterday));
+    // Only yesterday is stored, though the whole year has been checked
+    verify(mockCoverageRpsy).save(coverage(TODAY.minusDays(1), TODAY.minusDays(1),
+        TODAY.minusYears(1), TODAY.minusDays(1)));
+  }
+
+  @Test
+  public void testPricesAlreadyStoredAreNotSavedAgain() {
+    IexHistoricalPrice stored = price(TODAY.minusDays(3));
+    IexHistoricalPrice missing = price(TODAY.minusDays(2));
+    given(mockIexClient.getHistoricalPriceForRange("AAPL", "1m"))
+        .willReturn(Arrays.asList(stored, missing));
+    given(mockPriceRpsy.findDates("AAPL", startOf(TODAY.minusDays(3)), startOf(TODAY.minusDays(1))))
+        .willReturn(Collections.singletonList(startOf(TODAY.minusDays(3))));
+
+    store.getPricesForRange("AAPL", "1m");
+
+    verify(mockPriceRpsy).saveAll(Collections.singletonList(missing));
+  }
+
+  @Test
+  public void testPricesStoredByAnotherRequestFirstAreStillReturned() {
+    List<IexHistoricalPrice> fetched = Collections.singletonList(price(TODAY.minusDays(2)));
+    given(mockIexClient.getHistoricalPriceForRange("AAPL", "1m")).willReturn(fetched);
+    willThrow(new DataIntegrityViolationException("duplicate key"))
+        .given(mockPriceRpsy).saveAll(any());
+
+    assertEquals(fetched, store.getPricesForRange("AAPL", "1m"));
+  }
+
+  @Test
+  public void testRangeStartingOnDayWithoutPriceIsServedLocally() {
+    // The year starts on a weekend, so the first stored price is a couple of days in
+    given(mockCoverageRpsy.findById("AAPL")).willReturn(Optional.of(coverage(
+        TODAY.minusYears(1).plusDays(2), TODAY.minusDays(1), TODAY.minusYears(1),
+        TODAY.minusDays(1))));
+
+    store.getPricesForRange("AAPL", "1y");
+
+    verify(mockIexClient, never()).getHistoricalPriceForRange(anyString(), anyString());
+  }
+
+  @Test
+  public void testCoveredRangeIsServedLocally() {
+    List<IexHistoricalPrice> stored = Collections.singletonList(price(TODAY.minusDays(3)));
+    given(mockCoverageRpsy.findById("AAPL"))
+        .willReturn(Optional.of(coverage(TODAY.minusYears(5), TODAY.minusDays(1))));
+    given(mockPriceRpsy.findPrices("AAPL", startOf(TODAY.minusYears(1)), startOf(TODAY)))
+        .willReturn(stored);
+
+    assertEquals(stored, store.getPricesForRange("AAPL", "1y"));
+    verify(mockIexClient, never()).getHistoricalPriceForRange(anyString(), anyString());
+  }
+
+  @Test
+  public void testOnlyMissingDaysAreFetched() {
+    // The last day checked had no price yet, so the gap starts after the last stored price
+    IexHistoricalPriceCoverage coverage = coverage(TODAY.minusYears(5), TODAY.minusDays(10),
+        TODAY.minusYears(5), TODAY.minusDays(3));
+    given(mockCoverageRpsy.findById("AAPL")).willReturn(Optional.of(coverage));
+    given(mockIexClient.getHistoricalPriceForRange("AAPL", "1m"))
+        .willReturn(Collections.singletonList(price(TODAY.minusDays(2))));
+
+    store.getPricesForRange("AAPL", "5y");
+
+    // 1m is the shortest range that reaches back to the first missing day
+    verify(mockIexClient).getHistoricalPriceForRange("AAPL", "1m");
+    verify(mockCoverageRpsy).save(coverage(TODAY.minusYears(5), TODAY.minusDays(2),
+        TODAY.minusYears(5), TODAY.minusDays(1)));
+    verify(mockPriceRpsy).findPrices("AAPL", startOf(TODAY.minusYears(5)), startOf(TODAY));
+  }
+
+  @Test
+  public void testIntradayRangeIsPassedThrough() {
+    store.getPricesForRange("AAPL", "1mm");
+
+    verify(mockIexClient).getHistoricalPriceForRange("AAPL", "1mm");
+    verify(mockPriceRpsy, never()).saveAll(any());
+  }
+
+  @Test
+  public void testCoveredDateWithoutPriceIsNotFetched() {
+    LocalDate holiday = TODAY.minusDays(20);
+    given(mockPriceRpsy.findPrices("AAPL", startOf(holiday), startOf(holiday.plusDays(1))))
+        .willReturn(Collections.emptyList());
+    given(mockCoverageRpsy.findById("AAPL"))
+        .willReturn(Optional.of(coverage(TODAY.minusYears(1), TODAY.minusDays(1))));
+
+    assertTrue(store.getPriceOnDate("AAPL", holiday).isEmpty());
+    verify(mockIexClient, never()).getHistoricalPriceOnDate(anyString(), any(LocalDate.class));
+  }
+
+  @Test
+  public void testDateWithoutPriceIsOnlyFetchedOnce() {
+    LocalDate weekend = TODAY.minusDays(7);
+    given(mockIexClient.getHistoricalPriceOnDate("AAPL", weekend))
+        .willReturn(Collections.emptyList());
+
+    assertTrue(store.getPriceOnDate("AAPL", weekend).isEmpty());
+    assertTrue(store.getPriceOnDate("AAPL", weekend).isEmpty());
+
+    verify(mockIexClient, times(1)).getHistoricalPriceOnDate("AAPL", weekend);
+  }
+
+  private static IexHistoricalPrice price(final LocalDate date) {
+    return IexHistoricalPrice.builder().symbol("AAPL").date(startOf(date))
+        .open(new BigDecimal("42.25")).close(new BigDecimal("41.37"))
+        .high(new BigDecimal("42.27")).low(new BigDecimal("41.32"))
+        .volume(new BigDecimal("162814840")).build();
+  }
+
+  private static IexHistoricalPriceCoverage coverage(final LocalDate from, final LocalDate to) {
+    return coverage(from, to, from, to);
+  }
+
+  private static IexHistoricalPriceCoverage coverage(final LocalDate from, final LocalDate to,
+      final LocalDate checkedFrom, final LocalDate checkedTo) {
+    return IexHistoricalPriceCoverage.builder().symbol("AAPL").fromDate(from).toDate(to)
+        .checkedFrom(checkedFrom).checkedTo(checkedTo).build();
+  }
+
+  private static Instant startOf(final LocalDate date) {
+    return date.atStartOfDay(ZoneOffset.UTC).toInstant();
+  }
+}
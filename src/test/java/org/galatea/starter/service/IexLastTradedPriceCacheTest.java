@@ -0,0 +1,174 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.galatea.starter.domain.IexLastTradedPrice;
+import org.galatea.starter.domain.IexLastTradedPriceResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+public class IexLastTradedPriceCacheTest {
+
+  private IexClient mockIexClient;
+
+  private IexLastTradedPriceCache priceCache;
+
+  private ExecutorService requestThreads;
+
+  private ExecutorService iexThreads;
+
+  @Before
+  public void setup() {
+    mockIexClient = mock(IexClient.class);
+    requestThreads = Executors.newFixedThreadPool(2);
+    iexThreads = Executors.newFixedThreadPool(4);
+    priceCache = createCache(100, 5000);
+  }
+
+  @After
+  public void tearDown() {
+    requestThreads.shutdownNow();
+    iexThreads.shutdownNow();
+  }
+
+  @Test
+  public void testCachedPricesAreNotRefetched() {
+    given(mockIexClient.getLastTradedPriceForSymbols(new String[] {"FB", "AAPL"}))
+        .willReturn(Arrays.asList(price("AAPL"), price("FB")));
+
+    IexLastTradedPriceResult first =
+        priceCache.getLastTradedPrices(Arrays.asList("FB", "AAPL")).join();
+    IexLastTradedPriceResult second =
+        priceCache.getLastTradedPrices(Arrays.asList("aapl", "fb")).join();
+
+    // Results come back in the order they were asked for, not the order IEX returned them
+    assertEquals(Arrays.asList("FB", "AAPL"), symbols(first));
+    assertEquals(Arrays.asList("AAPL", "FB"), symbols(second));
+    verify(mockIexClient, times(1)).getLastTradedPriceForSymbols(any());
+  }
+
+  @Test
+  public void testUnknownSymbolsAreLeftOut() {
+    given(mockIexClient.getLastTradedPriceForSymbols(new String[] {"FB", "NOPE"}))
+        .willReturn(Collections.singletonList(price("FB")));
+
+    IexLastTradedPriceResult result =
+        priceCache.getLastTradedPrices(Arrays.asList("FB", "NOPE")).join();
+
+    assertEquals(Collections.singletonList("FB"), symbols(result));
+  }
+
+  @Test
+  public void testConcurrentRequestsShareInFlightFetch() throws Exception {
+    CountDownLatch firstFetchStarted = new CountDownLatch(1);
+    CountDownLatch releaseFirstFetch = new CountDownLatch(1);
+    given(mockIexClient.getLastTradedPriceForSymbols(new String[] {"FB"})).willAnswer(inv -> {
+      firstFetchStarted.countDown();
+      assertTrue(releaseFirstFetch.await(5, TimeUnit.SECONDS));
+      return Collections.singletonList(price("FB"));
+    });
+    given(mockIexClient.getLastTradedPriceForSymbols(new String[] {"AAPL"}))
+        .willReturn(Collections.singletonList(price("AAPL")));
+
+    CompletableFuture<IexLastTradedPriceResult> first = CompletableFuture.supplyAsync(
+        () -> priceCache.getLastTradedPrices(Collections.singletonList("FB")).join(),
+        requestThreads);
+    assertTrue(firstFetchStarted.await(5, TimeUnit.SECONDS));
+
+    // FB is already being fetched, so this request should only ask IEX for AAPL
+    CompletableFuture<IexLastTradedPriceResult> second = CompletableFuture.supplyAsync(
+        () -> priceCache.getLastTradedPrices(Arrays.asList("FB", "AAPL")).join(), requestThreads);
+    releaseFirstFetch.countDown();
+
+    assertEquals(Collections.singletonList("FB"), symbols(first.get(5, TimeUnit.SECONDS)));
+    assertEquals(Arrays.asList("FB", "AAPL"), symbols(second.get(5, TimeUnit.SECONDS)));
+    verify(mockIexClient, times(1)).getLastTradedPriceForSymbols(new String[] {"FB"});
+    verify(mockIexClient, times(1)).getLastTradedPriceForSymbols(new String[] {"AAPL"});
+  }
+
+  @Test
+  public void testLargeRequestsAreChunked() {
+    priceCache = createCache(2, 5000);
+    given(mockIexClient.getLastTradedPriceForSymbols(any())).willAnswer(inv -> {
+      String[] symbols = inv.getArgument(0);
+      return Arrays.stream(symbols).map(IexLastTradedPriceCacheTest::price)
+          .collect(Collectors.toList());
+    });
+
+    IexLastTradedPriceResult result =
+        priceCache.getLastTradedPrices(Arrays.asList("E", "D", "C", "B", "A")).join();
+
+    assertEquals(Arrays.asList("E", "D", "C", "B", "A"), symbols(result));
+    verify(mockIexClient).getLastTradedPriceForSymbols(new String[] {"E", "D"});
+    verify(mockIexClient).getLastTradedPriceForSymbols(new String[] {"C", "B"});
+    verify(mockIexClient).getLastTradedPriceForSymbols(new String[] {"A"});
+  }
+
+  @Test
+  public void testFailedChunkIsReported() {
+    priceCache = createCache(1, 200);
+    given(mockIexClient.getLastTradedPriceForSymbols(new String[] {"FB"}))
+        .willReturn(Collections.singletonList(price("FB")));
+    given(mockIexClient.getLastTradedPriceForSymbols(new String[] {"AAPL"}))
+        .willThrow(new IllegalStateException("IEX is down"));
+    given(mockIexClient.getLastTradedPriceForSymbols(new String[] {"IBM"})).willAnswer(inv -> {
+      Thread.sleep(2000);
+      return Collections.singletonList(price("IBM"));
+    });
+
+    IexLastTradedPriceResult result =
+        priceCache.getLastTradedPrices(Arrays.asList("FB", "AAPL", "IBM")).join();
+
+    assertEquals(Collections.singletonList("FB"), symbols(result));
+    assertEquals(Arrays.asList("AAPL", "IBM"), result.getFailedSymbols());
+  }
+
+  @Test
+  public void testEveryChunkFailingThrows() {
+    given(mockIexClient.getLastTradedPriceForSymbols(any()))
+        .willThrow(new IllegalStateException("IEX is down"));
+
+    try {
+      priceCache.getLastTradedPrices(Arrays.asList("FB", "AAPL")).join();
+      fail("A CompletionException was expected but not thrown");
+    } catch (CompletionException e) {
+      assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+  }
+
+  private IexLastTradedPriceCache createCache(final int chunkSize, final long chunkTimeoutMillis) {
+    return new IexLastTradedPriceCache(mockIexClient,
+        new ConcurrentMapCacheManager(IexLastTradedPriceCache.CACHE_NAME), iexThreads, chunkSize,
+        chunkTimeoutMillis);
+  }
+
+  private static IexLastTradedPrice price(final String symbol) {
+    return IexLastTradedPrice.builder().symbol(symbol).price(new BigDecimal("100.00")).size(10)
+        .time(1L).build();
+  }
+
+  private static List<String> symbols(final IexLastTradedPriceResult result) {
+    return result.getPrices().stream().map(IexLastTradedPrice::getSymbol)
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,75 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.galatea.starter.domain.ProcessedMessage;
+import org.galatea.starter.domain.rpsy.IProcessedMessageRpsy;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+public class ProcessedMessageIndexTest {
+
+  private IProcessedMessageRpsy mockProcessedMessageRpsy;
+
+  private ProcessedMessageIndex index;
+
+  @Before
+  public void setup() {
+    mockProcessedMessageRpsy = mock(IProcessedMessageRpsy.class);
+    index = new ProcessedMessageIndex(mockProcessedMessageRpsy,
+        new ConcurrentMapCacheManager(ProcessedMessageIndex.CACHE_NAME), 60);
+  }
+
+  @Test
+  public void testIndexedMessagesAreProcessed() {
+    index.index(Collections.singletonList("ID:1"));
+
+    assertTrue(index.isProcessed("ID:1", true));
+    verify(mockProcessedMessageRpsy, never()).existsById(anyString());
+  }
+
+  @Test
+  public void testFirstDeliveryDoesNotCheckTheStore() {
+    assertFalse(index.isProcessed("ID:1", false));
+    verify(mockProcessedMessageRpsy, never()).existsById(anyString());
+  }
+
+  @Test
+  public void testRedeliveryChecksTheStore() {
+    given(mockProcessedMessageRpsy.existsById("ID:1")).willReturn(true);
+
+    assertTrue(index.isProcessed("ID:1", true));
+    // Found in the store once, then served from the in-memory index
+    assertTrue(index.isProcessed("ID:1", true));
+    verify(mockProcessedMessageRpsy).existsById("ID:1");
+  }
+
+  @Test
+  public void testRecord() {
+    index.record(Arrays.asList("ID:1", "ID:2"));
+
+    // Inserted straight away; the primary key catches messages that were already recorded
+    verify(mockProcessedMessageRpsy, never()).findAllById(any());
+    verify(mockProcessedMessageRpsy).saveAll(argThat((Iterable<ProcessedMessage> messages) -> {
+      List<String> ids = new ArrayList<>();
+      messages.forEach(message -> {
+        assertTrue(message.isNew());
+        ids.add(message.getMessageId());
+      });
+      return ids.equals(Arrays.asList("ID:1", "ID:2"));
+    }));
+  }
+}
@@ -0,0 +1,272 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.galatea.starter.utils.jms.ProcessingLatency;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SettlementBatcherTest {
+
+  private SettlementService mockSettlementService;
+
+  private ExecutorService listenerThreads;
+
+  @Before
+  public void setup() {
+    mockSettlementService = mock(SettlementService.class);
+    listenerThreads = Executors.newFixedThreadPool(3);
+  }
+
+  @After
+  public void tearDown() {
+    listenerThreads.shutdownNow();
+  }
+
+  @Test
+  public void testSettleWhenDisabled() {
+    List<TradeAgreement> agreements =
+        Collections.singletonList(TestDataGenerator.defaultTradeAgreementData().build());
+    given(mockSettlementService.spawnMissions(agreements))
+        .willReturn(Collections.singleton(1L));
+
+    SettlementBatcher batcher = new SettlementBatcher(mockSettlementService,
+        new ProcessingLatency(), false, 3, 50, 10, 10000, "1-3");
+    batcher.start();
+
+    assertEquals(Collections.singleton(1L), batcher.settle(agreements));
+  }
+
+  @Test
+  public void testSettleFlushesFullBatch() throws Exception {
+    given(mockSettlementService.spawnMissions(anyList()))
+        .willReturn(new LinkedHashSet<>(Arrays.asList(1L, 2L, 3L)));
+
+    // A long time window, so that only the size limit can trigger the flush
+    SettlementBatcher batcher = new SettlementBatcher(mockSettlementService,
+        new ProcessingLatency(), true, 3, 60000, 10, 10000, "1-3");
+    batcher.start();
+
+    List<CompletableFuture<Set<Long>>> results = Arrays.asList(
+        settleAsync(batcher, "IBM"), settleAsync(batcher, "MSFT"), settleAsync(batcher, "AAPL"));
+
+    // Each message only gets the id of the mission spawned for its own agreement
+    Set<Long> missionIds = new HashSet<>();
+    for (CompletableFuture<Set<Long>> result : results) {
+      Set<Long> ids = result.get(10, TimeUnit.SECONDS);
+      assertEquals(1, ids.size());
+      missionIds.addAll(ids);
+    }
+    assertEquals(new HashSet<>(Arrays.asList(1L, 2L, 3L)), missionIds);
+    verify(mockSettlementService, times(1))
+        .spawnMissions(argThat(agreements -> agreements.size() == 3));
+    batcher.stop();
+  }
+
+  @Test
+  public void testListenerConcurrencyIsRaisedToMaxBatchSize() {
+    assertEquals("1-3", new SettlementBatcher(mockSettlementService, new ProcessingLatency(),
+        false, 500, 50, 10, 10000, "1-3").getListenerConcurrency());
+    assertEquals("1-500", new SettlementBatcher(mockSettlementService, new ProcessingLatency(),
+        true, 500, 50, 10, 10000, "1-3").getListenerConcurrency());
+    assertEquals("5-10", new SettlementBatcher(mockSettlementService, new ProcessingLatency(),
+        true, 10, 50, 10, 10000, "5-10").getListenerConcurrency());
+  }
+
+  @Test
+  public void testSettleFillsBatchPastConfiguredListenerThreads() throws Exception {
+    given(mockSettlementService.spawnMissions(anyList())).willAnswer(invocation -> {
+      Set<Long> ids = new LinkedHashSet<>();
+      for (int i = 0; i < invocation.<List<?>>getArgument(0).size(); i++) {
+        ids.add((long) i);
+      }
+      return ids;
+    });
+
+    // Configured with 3 listener threads, but a batch holds up to 10 single-agreement messages
+    SettlementBatcher batcher = new SettlementBatcher(mockSettlementService,
+        new ProcessingLatency(), true, 10, 60000, 20, 10000, "1-3");
+    batcher.start();
+    String concurrency = batcher.getListenerConcurrency();
+    int threads = Integer.parseInt(concurrency.substring(concurrency.indexOf('-') + 1));
+    assertEquals(10, threads);
+
+    ExecutorService raisedListenerThreads = Executors.newFixedThreadPool(threads);
+    try {
+      List<CompletableFuture<Set<Long>>> results = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        List<TradeAgreement> agreements =
+            Collections.singletonList(TestDataGenerator.defaultTradeAgreementData().build());
+        results.add(CompletableFuture.supplyAsync(() -> batcher.settle(agreements),
+            raisedListenerThreads));
+      }
+      for (CompletableFuture<Set<Long>> result : results) {
+        assertEquals(1, result.get(10, TimeUnit.SECONDS).size());
+      }
+    } finally {
+      raisedListenerThreads.shutdownNow();
+    }
+
+    // The long time window means only a full batch of all 10 messages could have been flushed
+    verify(mockSettlementService, times(1))
+        .spawnMissions(argThat(agreements -> agreements.size() == 10));
+    batcher.stop();
+  }
+
+  @Test
+  public void testSettleFlushesAfterTimeWindow() throws Exception {
+    given(mockSettlementService.spawnMissions(anyList())).willReturn(Collections.singleton(1L));
+
+    SettlementBatcher batcher = new SettlementBatcher(mockSettlementService,
+        new ProcessingLatency(), true, 500, 20, 10, 10000, "1-3");
+    batcher.start();
+
+    assertEquals(Collections.singleton(1L),
+        settleAsync(batcher, "IBM").get(10, TimeUnit.SECONDS));
+    batcher.stop();
+  }
+
+  @Test
+  public void testSettleIsolatesFailedMessage() throws Exception {
+    TradeAgreement good = TestDataGenerator.defaultTradeAgreementData().instrument("IBM").build();
+    TradeAgreement bad = TestDataGenerator.defaultTradeAgreementData().instrument("BAD").build();
+
+    // The combined batch fails, as does the bad agreement on its own
+    given(mockSettlementService.spawnMissions(argThat(agreements -> agreements.contains(bad))))
+        .willThrow(new IllegalArgumentException("bad agreement"));
+    given(mockSettlementService.spawnMissions(Collections.singletonList(good)))
+        .willReturn(Collections.singleton(1L));
+
+    SettlementBatcher batcher = new SettlementBatcher(mockSettlementService,
+        new ProcessingLatency(), true, 2, 60000, 10, 10000, "1-3");
+    batcher.start();
+
+    CompletableFuture<Set<Long>> goodResult = CompletableFuture.supplyAsync(
+        () -> batcher.settle(Collections.singletonList(good)), listenerThreads);
+    CompletableFuture<Set<Long>> badResult = CompletableFuture.supplyAsync(
+        () -> batcher.settle(Collections.singletonList(bad)), listenerThreads);
+
+    assertEquals(Collections.singleton(1L), goodResult.get(10, TimeUnit.SECONDS));
+    try {
+      badResult.get(10, TimeUnit.SECONDS);
+      fail("The bad agreement was expected to fail");
+    } catch (ExecutionException e) {
+      assertEquals(IllegalArgumentException.class, e.getCause().getClass());
+    }
+    batcher.stop();
+  }
+
+  @Test
+  public void testSettlePassesMessageIdsWithBatch() throws Exception {
+    given(mockSettlementService.spawnMissions(anyList(), anyList()))
+        .willReturn(new LinkedHashSet<>(Arrays.asList(1L, 2L)));
+
+    SettlementBatcher batcher = new SettlementBatcher(mockSettlementService,
+        new ProcessingLatency(), true, 2, 60000, 10, 10000, "1-3");
+    batcher.start();
+
+    List<TradeAgreement> agreements =
+        Collections.singletonList(TestDataGenerator.defaultTradeAgreementData().build());
+    CompletableFuture<Set<Long>> first = CompletableFuture.supplyAsync(
+        () -> batcher.settle(agreements, "ID:1"), listenerThreads);
+    CompletableFuture<Set<Long>> second = CompletableFuture.supplyAsync(
+        () -> batcher.settle(agreements, "ID:2"), listenerThreads);
+
+    assertEquals(1, first.get(10, TimeUnit.SECONDS).size());
+    assertEquals(1, second.get(10, TimeUnit.SECONDS).size());
+    verify(mockSettlementService).spawnMissions(anyList(),
+        argThat(messageIds -> new HashSet<>(messageIds).equals(
+            new HashSet<>(Arrays.asList("ID:1", "ID:2")))));
+    batcher.stop();
+  }
+
+  @Test
+  public void testSettleSplitsMissionIdsByMessage() throws Exception {
+    List<TradeAgreement> twoAgreements = Arrays.asList(
+        TestDataGenerator.defaultTradeAgreementData().instrument("IBM").build(),
+        TestDataGenerator.defaultTradeAgreementData().instrument("MSFT").build());
+    List<TradeAgreement> oneAgreement = Collections.singletonList(
+        TestDataGenerator.defaultTradeAgreementData().instrument("AAPL").build());
+
+    // One id per agreement, in the order of the agreements in the combined batch
+    given(mockSettlementService.spawnMissions(anyList())).willAnswer(invocation -> {
+      List<TradeAgreement> agreements = invocation.getArgument(0);
+      Set<Long> ids = new LinkedHashSet<>();
+      for (TradeAgreement agreement : agreements) {
+        ids.add((long) agreement.getInstrument().hashCode());
+      }
+      return ids;
+    });
+
+    SettlementBatcher batcher = new SettlementBatcher(mockSettlementService,
+        new ProcessingLatency(), true, 3, 60000, 10, 10000, "1-3");
+    batcher.start();
+
+    CompletableFuture<Set<Long>> first = CompletableFuture.supplyAsync(
+        () -> batcher.settle(twoAgreements), listenerThreads);
+    CompletableFuture<Set<Long>> second = CompletableFuture.supplyAsync(
+        () -> batcher.settle(oneAgreement), listenerThreads);
+
+    assertEquals(new HashSet<>(Arrays.asList((long) "IBM".hashCode(), (long) "MSFT".hashCode())),
+        first.get(10, TimeUnit.SECONDS));
+    assertEquals(Collections.singleton((long) "AAPL".hashCode()),
+        second.get(10, TimeUnit.SECONDS));
+    verify(mockSettlementService, times(1))
+        .spawnMissions(argThat(agreements -> agreements.size() == 3));
+    batcher.stop();
+  }
+
+  @Test
+  public void testSettleTimesOut() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    given(mockSettlementService.spawnMissions(anyList())).willAnswer(invocation -> {
+      release.await(10, TimeUnit.SECONDS);
+      return Collections.singleton(1L);
+    });
+
+    SettlementBatcher batcher = new SettlementBatcher(mockSettlementService,
+        new ProcessingLatency(), true, 1, 60000, 10, 50, "1-3");
+    batcher.start();
+
+    try {
+      settleAsync(batcher, "IBM").get(10, TimeUnit.SECONDS);
+      fail("The settlement was expected to time out");
+    } catch (ExecutionException e) {
+      assertEquals(IllegalStateException.class, e.getCause().getClass());
+    } finally {
+      release.countDown();
+    }
+    batcher.stop();
+  }
+
+  private CompletableFuture<Set<Long>> settleAsync(final SettlementBatcher batcher,
+      final String instrument) {
+    TradeAgreement agreement =
+        TestDataGenerator.defaultTradeAgreementData().instrument(instrument).build();
+    return CompletableFuture.supplyAsync(
+        () -> batcher.settle(Collections.singletonList(agreement)), listenerThreads);
+  }
+}
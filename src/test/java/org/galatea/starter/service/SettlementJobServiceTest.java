@@ -0,0 +1,133 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import org.galatea.starter.domain.SettlementJob;
+import org.galatea.starter.domain.SettlementJob.Status;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.core.task.TaskRejectedException;
+
+public class SettlementJobServiceTest {
+
+  private SettlementService mockSettlementService;
+
+  private TradeAgreement ibm;
+
+  private TradeAgreement msft;
+
+  private TradeAgreement aapl;
+
+  @Before
+  public void setup() {
+    mockSettlementService = mock(SettlementService.class);
+    ibm = TestDataGenerator.defaultTradeAgreementData().instrument("IBM").build();
+    msft = TestDataGenerator.defaultTradeAgreementData().instrument("MSFT").build();
+    aapl = TestDataGenerator.defaultTradeAgreementData().instrument("AAPL").build();
+  }
+
+  @Test
+  public void testJobSettlesAgreementsInChunks() {
+    given(mockSettlementService.spawnMissions(Arrays.asList(ibm, msft)))
+        .willReturn(Collections.singleton(1L));
+    given(mockSettlementService.spawnMissions(Collections.singletonList(aapl)))
+        .willReturn(Collections.singleton(2L));
+
+    // Jobs run on the submitting thread, so each one is done by the time submit returns
+    SettlementJobService jobService = jobService(Runnable::run, 2);
+    SettlementJob job = jobService.submit(Arrays.asList(ibm, msft, aapl));
+
+    SettlementJob found = jobService.findJob(job.getId()).get();
+    assertEquals(Status.COMPLETED, found.getStatus());
+    assertEquals(3, found.getSettledAgreementCount());
+    assertEquals(Arrays.asList(1L, 2L), Arrays.asList(found.getMissionIds().toArray()));
+  }
+
+  @Test
+  public void testJobStopsAtFailedChunk() {
+    given(mockSettlementService.spawnMissions(Collections.singletonList(ibm)))
+        .willReturn(Collections.singleton(1L));
+    IllegalStateException failure = new IllegalStateException("database unavailable");
+    given(mockSettlementService.spawnMissions(Collections.singletonList(msft)))
+        .willThrow(failure);
+
+    SettlementJob job = jobService(Runnable::run, 1).submit(Arrays.asList(ibm, msft, aapl));
+
+    assertEquals(Status.FAILED, job.getStatus());
+    assertSame(failure, job.getFailure());
+    assertEquals(1, job.getSettledAgreementCount());
+    assertEquals(Collections.singleton(1L), job.getMissionIds());
+  }
+
+  @Test
+  public void testJobIsPutBackOnEachUpdate() {
+    given(mockSettlementService.spawnMissions(Collections.singletonList(ibm)))
+        .willReturn(Collections.singleton(1L));
+    given(mockSettlementService.spawnMissions(Collections.singletonList(msft)))
+        .willReturn(Collections.singleton(2L));
+    Cache mockJobs = mock(Cache.class);
+    CacheManager mockCacheManager = mock(CacheManager.class);
+    given(mockCacheManager.getCache(SettlementJobService.CACHE_NAME)).willReturn(mockJobs);
+
+    SettlementJob job = new SettlementJobService(mockSettlementService, Runnable::run,
+        mockCacheManager, 1).submit(Arrays.asList(ibm, msft));
+
+    // Once on submission, once when started, once per chunk and once when done, so that the
+    // job's time to live keeps being pushed back while it runs
+    verify(mockJobs, times(5)).put(eq(job.getId()), eq(job));
+  }
+
+  @Test
+  public void testJobIsQueuedUntilAWorkerIsFree() {
+    List<Runnable> queue = new ArrayList<>();
+    SettlementJobService jobService = jobService(queue::add, 10);
+
+    SettlementJob job = jobService.submit(Collections.singletonList(ibm));
+
+    assertEquals(Status.QUEUED, jobService.findJob(job.getId()).get().getStatus());
+  }
+
+  @Test
+  public void testRejectedJobIsForgotten() {
+    ConcurrentMapCacheManager cacheManager =
+        new ConcurrentMapCacheManager(SettlementJobService.CACHE_NAME);
+    SettlementJobService jobService = new SettlementJobService(mockSettlementService, task -> {
+      throw new TaskRejectedException("queue full");
+    }, cacheManager, 10);
+
+    try {
+      jobService.submit(Collections.singletonList(ibm));
+      fail("A TaskRejectedException was expected but not thrown");
+    } catch (TaskRejectedException e) {
+      // Exception is expected
+    }
+
+    ConcurrentMap<?, ?> jobs = (ConcurrentMap<?, ?>) cacheManager
+        .getCache(SettlementJobService.CACHE_NAME).getNativeCache();
+    assertTrue(jobs.isEmpty());
+  }
+
+  private SettlementJobService jobService(final Executor executor, final int chunkSize) {
+    return new SettlementJobService(mockSettlementService, executor,
+        new ConcurrentMapCacheManager(SettlementJobService.CACHE_NAME), chunkSize);
+  }
+}
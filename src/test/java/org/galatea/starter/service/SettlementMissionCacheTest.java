@@ -0,0 +1,82 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+public class SettlementMissionCacheTest {
+
+  private ISettlementMissionRpsy mockMissionRpsy;
+
+  private SettlementMissionCache missionCache;
+
+  @Before
+  public void setup() {
+    mockMissionRpsy = mock(ISettlementMissionRpsy.class);
+    missionCache = new SettlementMissionCache(mockMissionRpsy,
+        new ConcurrentMapCacheManager(SettlementMissionCache.CACHE_NAME));
+  }
+
+  @Test
+  public void testSavedMissionsAreServedFromTheCache() {
+    List<SettlementMission> toSave = Arrays.asList(mission(null), mission(null));
+    List<SettlementMission> saved = Arrays.asList(mission(1L), mission(2L));
+    given(mockMissionRpsy.saveAll(toSave)).willReturn(saved);
+
+    missionCache.saveAll(toSave);
+
+    assertEquals(saved, missionCache.findAllById(Arrays.asList(1L, 2L)));
+    verify(mockMissionRpsy, never()).findAllById(any());
+  }
+
+  @Test
+  public void testOnlyMissesAreLoaded() {
+    given(mockMissionRpsy.saveAll(any())).willReturn(Collections.singletonList(mission(2L)));
+    missionCache.saveAll(Collections.singletonList(mission(null)));
+    given(mockMissionRpsy.findAllById(Arrays.asList(3L, 1L)))
+        .willReturn(Arrays.asList(mission(1L), mission(3L)));
+
+    List<SettlementMission> found = missionCache.findAllById(Arrays.asList(3L, 2L, 1L, 3L));
+
+    // Missions come back in the order they were asked for, without duplicates
+    assertEquals(Arrays.asList(mission(3L), mission(2L), mission(1L)), found);
+    verify(mockMissionRpsy).findAllById(Arrays.asList(3L, 1L));
+  }
+
+  @Test
+  public void testLoadedMissionsAreCached() {
+    given(mockMissionRpsy.findAllById(Collections.singletonList(1L)))
+        .willReturn(Collections.singletonList(mission(1L)));
+
+    missionCache.findAllById(Collections.singletonList(1L));
+    missionCache.findAllById(Collections.singletonList(1L));
+
+    verify(mockMissionRpsy).findAllById(Collections.singletonList(1L));
+  }
+
+  @Test
+  public void testUnknownIdsAreLeftOut() {
+    given(mockMissionRpsy.findAllById(Arrays.asList(1L, 2L)))
+        .willReturn(Collections.singletonList(mission(1L)));
+
+    assertEquals(Collections.singletonList(mission(1L)),
+        missionCache.findAllById(Arrays.asList(1L, 2L)));
+  }
+
+  private static SettlementMission mission(final Long id) {
+    return TestDataGenerator.defaultSettlementMissionData().id(id).build();
+  }
+}
@@ -6,14 +6,24 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import javax.persistence.EntityManager;
 import org.galatea.starter.ASpringTest;
 import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.SettlementMissionBatchResult;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
 import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
@@ -22,6 +32,13 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 public class SettlementServiceTest extends ASpringTest {
 
@@ -31,11 +48,22 @@ public class SettlementServiceTest extends ASpringTest {
   @MockBean
   private IAgreementTransformer mockAgreementTransformer;
 
+  private SettlementMissionCache missionCache;
+
+  private TransactionTemplate transactionTemplate;
+
+  private ProcessedMessageIndex mockProcessedMessages;
+
   private SettlementService service;
 
   @Before
   public void setup() {
-    service = new SettlementService(mockSettlementMissionRpsy, mockAgreementTransformer);
+    missionCache = new SettlementMissionCache(mockSettlementMissionRpsy,
+        new ConcurrentMapCacheManager(SettlementMissionCache.CACHE_NAME));
+    transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+    mockProcessedMessages = mock(ProcessedMessageIndex.class);
+    service = new SettlementService(mockSettlementMissionRpsy, mockAgreementTransformer,
+        missionCache, transactionTemplate, mockProcessedMessages, ForkJoinPool.commonPool());
   }
 
   @Test
@@ -98,6 +126,49 @@ public class SettlementServiceTest extends ASpringTest {
     }
   }
 
+  @Test
+  public void testStreamMissionsAcrossPages() {
+    List<SettlementMission> missions = new ArrayList<>();
+    for (long id = 1; id <= 5; id++) {
+      missions.add(TestDataGenerator.defaultSettlementMissionData().id(id).build());
+    }
+    PageRequest page = PageRequest.of(0, 2);
+    given(mockSettlementMissionRpsy.findPageAfter(0L, Long.MAX_VALUE, "DTC", page))
+        .willReturn(missions.subList(0, 2));
+    given(mockSettlementMissionRpsy.findPageAfter(2L, Long.MAX_VALUE, "DTC", page))
+        .willReturn(missions.subList(2, 4));
+    given(mockSettlementMissionRpsy.findPageAfter(4L, Long.MAX_VALUE, "DTC", page))
+        .willReturn(missions.subList(4, 5));
+
+    List<SettlementMission> streamed = new ArrayList<>();
+    service.streamMissions("DTC", 1L, null, 2).forEach(streamed::add);
+
+    // Each page starts after the last id of the one before, and the short page is the last one
+    assertEquals(missions, streamed);
+    verify(mockSettlementMissionRpsy, times(3)).findPageAfter(Mockito.anyLong(),
+        Mockito.anyLong(), Mockito.any(), Mockito.any());
+  }
+
+  @Test
+  public void testStreamMissionsEndsOnEmptyPage() {
+    List<SettlementMission> missions = Arrays.asList(
+        TestDataGenerator.defaultSettlementMissionData().id(1L).build(),
+        TestDataGenerator.defaultSettlementMissionData().id(2L).build());
+    PageRequest page = PageRequest.of(0, 2);
+    given(mockSettlementMissionRpsy.findPageAfter(Long.MIN_VALUE, 10L, null, page))
+        .willReturn(missions);
+    given(mockSettlementMissionRpsy.findPageAfter(2L, 10L, null, page))
+        .willReturn(Collections.emptyList());
+
+    List<SettlementMission> streamed = new ArrayList<>();
+    service.streamMissions(null, null, 10L, 2).forEach(streamed::add);
+
+    // A full last page can't tell that it's the last, so one more (empty) page is fetched
+    assertEquals(missions, streamed);
+    verify(mockSettlementMissionRpsy, times(2)).findPageAfter(Mockito.anyLong(),
+        Mockito.anyLong(), Mockito.any(), Mockito.any());
+  }
+
   @Test
   public void testSpawnMissions() {
 
@@ -114,6 +185,82 @@ public class SettlementServiceTest extends ASpringTest {
     assertEquals(1, missionIds.size());
   }
 
+  @Test
+  public void testSpawnMissionsInParallel() {
+    ReflectionTestUtils.setField(service, "parallelThreshold", 3);
+    ReflectionTestUtils.setField(service, "parallelChunkSize", 2);
+    EntityManager mockEntityManager = mock(EntityManager.class);
+    ReflectionTestUtils.setField(service, "entityManager", mockEntityManager);
+
+    List<TradeAgreement> agreements = new ArrayList<>();
+    for (int i = 1; i <= 5; i++) {
+      agreements.add(TestDataGenerator.defaultTradeAgreementData().qty((double) i).build());
+    }
+    given(mockAgreementTransformer.transform(Mockito.any())).willAnswer(
+        invocation -> TestDataGenerator.defaultSettlementMissionData()
+            .qty(invocation.<TradeAgreement>getArgument(0).getQty()).build());
+
+    List<Double> savedQtys = new ArrayList<>();
+    given(mockSettlementMissionRpsy.saveAll(Mockito.anyList())).willAnswer(invocation -> {
+      List<SettlementMission> chunk = invocation.getArgument(0);
+      List<SettlementMission> saved = new ArrayList<>();
+      for (SettlementMission mission : chunk) {
+        savedQtys.add(mission.getQty());
+        saved.add(TestDataGenerator.defaultSettlementMissionData()
+            .id(mission.getQty().longValue()).build());
+      }
+      return saved;
+    });
+
+    Set<Long> missionIds = service.spawnMissions(agreements);
+
+    // Saved in chunks of two, in the order the agreements were given
+    assertEquals(new HashSet<>(Arrays.asList(1L, 2L, 3L, 4L, 5L)), missionIds);
+    assertEquals(Arrays.asList(1d, 2d, 3d, 4d, 5d), savedQtys);
+    verify(mockSettlementMissionRpsy, times(3)).saveAll(Mockito.anyList());
+
+    // Each chunk is flushed and let go of before the next is saved
+    verify(mockEntityManager, times(3)).flush();
+    verify(mockEntityManager, times(3)).clear();
+  }
+
+  @Test
+  public void testSpawnMissionsRecordsMessages() {
+    SettlementMission testSettlementMission = TestDataGenerator.defaultSettlementMissionData()
+        .id(35L).build();
+    TradeAgreement testTradeAgreement = TestDataGenerator.defaultTradeAgreementData().build();
+    List<String> messageIds = Collections.singletonList("ID:1");
+
+    given(this.mockSettlementMissionRpsy.saveAll(Mockito.anyList()))
+        .willReturn(Collections.singletonList(testSettlementMission));
+
+    Set<Long> missionIds =
+        service.spawnMissions(Collections.singletonList(testTradeAgreement), messageIds);
+
+    assertEquals(Collections.singleton(35L), missionIds);
+    verify(mockProcessedMessages).record(messageIds);
+    verify(mockProcessedMessages).index(messageIds);
+  }
+
+  @Test
+  public void testSpawnMissionsForProcessedMessage() {
+    List<String> messageIds = Collections.singletonList("ID:1");
+    doThrow(new DuplicateKeyException("ID:1 has already been processed"))
+        .when(mockProcessedMessages).record(messageIds);
+
+    try {
+      service.spawnMissions(
+          Collections.singletonList(TestDataGenerator.defaultTradeAgreementData().build()),
+          messageIds);
+      fail("A DuplicateKeyException was expected but not thrown");
+    } catch (DuplicateKeyException e) {
+      // Exception is expected
+    }
+
+    verify(mockSettlementMissionRpsy, never()).saveAll(Mockito.anyList());
+    verify(mockProcessedMessages, never()).index(messageIds);
+  }
+
   @Test
   public void testUpdateMission() {
 
@@ -124,7 +271,9 @@ public class SettlementServiceTest extends ASpringTest {
         .willReturn(testSettlementMission);
 
     SettlementService service =
-        new SettlementService(this.mockSettlementMissionRpsy, this.mockAgreementTransformer);
+        new SettlementService(this.mockSettlementMissionRpsy, this.mockAgreementTransformer,
+            this.missionCache, this.transactionTemplate, this.mockProcessedMessages,
+            ForkJoinPool.commonPool());
 
     Optional<SettlementMission> settlementMissionOptional = service.updateMission(35L, testSettlementMission);
     assertEquals((Long) 35L, settlementMissionOptional.get().getId());
@@ -137,7 +286,9 @@ public class SettlementServiceTest extends ASpringTest {
         .willReturn(true);
 
     SettlementService service =
-        new SettlementService(this.mockSettlementMissionRpsy, this.mockAgreementTransformer);
+        new SettlementService(this.mockSettlementMissionRpsy, this.mockAgreementTransformer,
+            this.missionCache, this.transactionTemplate, this.mockProcessedMessages,
+            ForkJoinPool.commonPool());
 
     boolean missionExists = service.missionExists(35L);
     assertTrue(missionExists);
@@ -149,10 +300,79 @@ public class SettlementServiceTest extends ASpringTest {
     doNothing().when(this.mockSettlementMissionRpsy).deleteById(35L);
 
     SettlementService service =
-        new SettlementService(this.mockSettlementMissionRpsy, this.mockAgreementTransformer);
+        new SettlementService(this.mockSettlementMissionRpsy, this.mockAgreementTransformer,
+            this.missionCache, this.transactionTemplate, this.mockProcessedMessages,
+            ForkJoinPool.commonPool());
 
     service.deleteMission(35L);
     boolean missionExists = service.missionExists(35L);
     assertFalse(missionExists);
   }
+
+  @Test
+  public void testUpdateMissions() {
+    SettlementMission current = TestDataGenerator.defaultSettlementMissionData().id(1L)
+        .version(1L).build();
+    SettlementMission stale = TestDataGenerator.defaultSettlementMissionData().id(2L)
+        .version(0L).build();
+    SettlementMission update = TestDataGenerator.defaultSettlementMissionData().id(1L)
+        .version(1L).qty(200d).build();
+    SettlementMission staleUpdate = TestDataGenerator.defaultSettlementMissionData().id(2L)
+        .version(1L).build();
+    SettlementMission missing = TestDataGenerator.defaultSettlementMissionData().id(3L).build();
+
+    given(this.mockSettlementMissionRpsy.findAllById(Arrays.asList(1L, 2L, 3L)))
+        .willReturn(Arrays.asList(current, stale));
+    given(this.mockSettlementMissionRpsy.saveAll(Collections.singletonList(update)))
+        .willReturn(Collections.singletonList(update));
+
+    SettlementMissionBatchResult result =
+        service.updateMissions(Arrays.asList(update, staleUpdate, missing));
+
+    assertEquals(Collections.singletonList(1L), result.getSucceededIds());
+    assertEquals(Arrays.asList(2L, 3L), new ArrayList<>(result.getFailures().keySet()));
+    assertTrue(result.getFailures().get(2L) instanceof ObjectOptimisticLockingFailureException);
+    assertTrue(result.getFailures().get(3L) instanceof EntityNotFoundException);
+    // The updated mission is written through to the cache
+    assertEquals(Collections.singletonList(update),
+        missionCache.findAllById(Collections.singletonList(1L)));
+  }
+
+  @Test
+  public void testUpdateMissionsRetriesChunkOneAtATime() {
+    SettlementMission first = TestDataGenerator.defaultSettlementMissionData().id(1L).build();
+    SettlementMission second = TestDataGenerator.defaultSettlementMissionData().id(2L).build();
+
+    given(this.mockSettlementMissionRpsy.findAllById(Arrays.asList(1L, 2L)))
+        .willReturn(Arrays.asList(first, second));
+    // Another update to the second mission got in before the batch was written
+    given(this.mockSettlementMissionRpsy.saveAll(Arrays.asList(first, second)))
+        .willThrow(new ObjectOptimisticLockingFailureException(SettlementMission.class, 2L));
+    given(this.mockSettlementMissionRpsy.findAllById(Collections.singletonList(1L)))
+        .willReturn(Collections.singletonList(first));
+    given(this.mockSettlementMissionRpsy.saveAll(Collections.singletonList(first)))
+        .willReturn(Collections.singletonList(first));
+    given(this.mockSettlementMissionRpsy.findAllById(Collections.singletonList(2L)))
+        .willReturn(Collections.singletonList(second));
+    given(this.mockSettlementMissionRpsy.saveAll(Collections.singletonList(second)))
+        .willThrow(new ObjectOptimisticLockingFailureException(SettlementMission.class, 2L));
+
+    SettlementMissionBatchResult result = service.updateMissions(Arrays.asList(first, second));
+
+    assertEquals(Collections.singletonList(1L), result.getSucceededIds());
+    assertEquals(Collections.singleton(2L), result.getFailures().keySet());
+  }
+
+  @Test
+  public void testDeleteMissions() {
+    SettlementMission existing = TestDataGenerator.defaultSettlementMissionData().id(1L).build();
+    given(this.mockSettlementMissionRpsy.findAllById(Arrays.asList(1L, 2L)))
+        .willReturn(Collections.singletonList(existing));
+
+    SettlementMissionBatchResult result = service.deleteMissions(Arrays.asList(1L, 2L));
+
+    assertEquals(Collections.singletonList(1L), result.getSucceededIds());
+    assertTrue(result.getFailures().get(2L) instanceof EntityNotFoundException);
+    verify(this.mockSettlementMissionRpsy).deleteAll(Collections.singletonList(existing));
+  }
 }
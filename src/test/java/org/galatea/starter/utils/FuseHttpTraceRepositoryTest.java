@@ -0,0 +1,87 @@
+package org.galatea.starter.utils;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.net.URI;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.galatea.starter.utils.rest.TraceSamplingPolicy;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.boot.actuate.trace.http.HttpExchangeTracer;
+import org.springframework.boot.actuate.trace.http.HttpTrace;
+import org.springframework.boot.actuate.trace.http.Include;
+import org.springframework.boot.actuate.trace.http.TraceableRequest;
+import org.springframework.boot.actuate.trace.http.TraceableResponse;
+
+public class FuseHttpTraceRepositoryTest {
+
+  private static final TraceSamplingPolicy ERRORS_ONLY =
+      new TraceSamplingPolicy(1, Collections.emptyMap(), true);
+
+  private final HttpExchangeTracer tracer = new HttpExchangeTracer(EnumSet.noneOf(Include.class));
+
+  private FuseHttpTraceRepository repository;
+
+  @After
+  public void shutdown() {
+    repository.shutdown();
+  }
+
+  @Test
+  public void testRecordsSampledTraces() {
+    repository = new FuseHttpTraceRepository(new ObjectMapper(), ERRORS_ONLY, 10, 10);
+
+    repository.add(trace("/settlementEngine/mission/1", 200));
+    repository.add(trace("/settlementEngine/mission/2", 404));
+
+    await().atMost(5, TimeUnit.SECONDS).until(() -> repository.findAll().size() == 1);
+    assertEquals(URI.create("http://localhost/settlementEngine/mission/2"),
+        repository.findAll().get(0).getRequest().getUri());
+  }
+
+  @Test
+  public void testDropsTracesWhenQueueIsFull() throws Exception {
+    // Hold up the recorder on the first trace, so that the next fills the queue
+    CountDownLatch recording = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ObjectMapper slowMapper = mock(ObjectMapper.class);
+    given(slowMapper.writeValueAsString(any())).willAnswer(invocation -> {
+      recording.countDown();
+      release.await();
+      return "{}";
+    });
+    repository = new FuseHttpTraceRepository(slowMapper, ERRORS_ONLY, 1, 10);
+
+    repository.add(trace("/settlementEngine", 500));
+    assertTrue(recording.await(5, TimeUnit.SECONDS));
+    repository.add(trace("/settlementEngine", 500));
+    repository.add(trace("/settlementEngine", 500));
+    assertEquals(1, repository.getDroppedTraceCount());
+
+    release.countDown();
+    await().atMost(5, TimeUnit.SECONDS).until(() -> repository.findAll().size() == 2);
+  }
+
+  private HttpTrace trace(final String path, final int status) {
+    TraceableRequest request = mock(TraceableRequest.class);
+    given(request.getMethod()).willReturn("GET");
+    given(request.getUri()).willReturn(URI.create("http://localhost" + path));
+    given(request.getHeaders()).willReturn(Collections.emptyMap());
+    TraceableResponse response = mock(TraceableResponse.class);
+    given(response.getStatus()).willReturn(status);
+    given(response.getHeaders()).willReturn(Collections.emptyMap());
+
+    HttpTrace trace = tracer.receivedRequest(request);
+    tracer.sendingResponse(trace, response, () -> null, () -> null);
+    return trace;
+  }
+}
@@ -0,0 +1,112 @@
+package org.galatea.starter.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Test;
+import org.springframework.boot.actuate.trace.http.HttpTrace;
+import org.springframework.boot.actuate.trace.http.HttpTrace.Request;
+import org.springframework.boot.actuate.trace.http.HttpTrace.Response;
+
+public class HttpTraceRingBufferTest {
+
+  private static final Instant START = Instant.parse("2019-01-01T09:00:00Z");
+
+  private static final HttpTraceQuery ALL = HttpTraceQuery.builder().build();
+
+  @Test
+  public void testFindsMostRecentFirst() {
+    HttpTraceRingBuffer buffer = new HttpTraceRingBuffer(5);
+    buffer.add(trace("/a", 200, 0, 10));
+    buffer.add(trace("/b", 200, 1, 10));
+    buffer.add(trace("/c", 200, 2, 10));
+
+    assertEquals(Arrays.asList("/c", "/b", "/a"), paths(buffer.find(ALL)));
+  }
+
+  @Test
+  public void testKeepsOnlyTheLatestTraces() {
+    HttpTraceRingBuffer buffer = new HttpTraceRingBuffer(2);
+    buffer.add(trace("/a", 200, 0, 10));
+    buffer.add(trace("/b", 200, 1, 10));
+    buffer.add(trace("/c", 200, 2, 10));
+
+    assertEquals(Arrays.asList("/c", "/b"), paths(buffer.find(ALL)));
+  }
+
+  @Test
+  public void testFindsByStatusAndPathPrefix() {
+    HttpTraceRingBuffer buffer = new HttpTraceRingBuffer(10);
+    buffer.add(trace("/settlementEngine/mission/1", 404, 0, 10));
+    buffer.add(trace("/settlementEngine/mission/2", 200, 1, 10));
+    buffer.add(trace("/iex/symbols", 404, 2, 10));
+
+    assertEquals(Collections.singletonList("/settlementEngine/mission/1"), paths(buffer.find(
+        HttpTraceQuery.builder().status(404).pathPrefix("/settlementEngine").build())));
+  }
+
+  @Test
+  public void testFindsWithinTimeWindow() {
+    HttpTraceRingBuffer buffer = new HttpTraceRingBuffer(10);
+    buffer.add(trace("/a", 200, 0, 10));
+    buffer.add(trace("/b", 200, 60, 10));
+    buffer.add(trace("/c", 200, 120, 10));
+
+    assertEquals(Collections.singletonList("/b"), paths(buffer.find(HttpTraceQuery.builder()
+        .from(START.plusSeconds(30)).to(START.plusSeconds(90)).build())));
+  }
+
+  @Test
+  public void testFindsWithinTimeWindowWhenStoredOutOfOrder() {
+    HttpTraceRingBuffer buffer = new HttpTraceRingBuffer(10);
+    buffer.add(trace("/b", 200, 60, 10));
+    buffer.add(trace("/a", 200, 0, 10));
+
+    assertEquals(Collections.singletonList("/b"),
+        paths(buffer.find(HttpTraceQuery.builder().from(START.plusSeconds(30)).build())));
+  }
+
+  @Test
+  public void testFindsUpToLimit() {
+    HttpTraceRingBuffer buffer = new HttpTraceRingBuffer(10);
+    buffer.add(trace("/a", 200, 0, 10));
+    buffer.add(trace("/b", 200, 1, 10));
+    buffer.add(trace("/c", 200, 2, 10));
+
+    assertEquals(Arrays.asList("/c", "/b"),
+        paths(buffer.find(HttpTraceQuery.builder().limit(2).build())));
+  }
+
+  @Test
+  public void testFindsSlowest() {
+    HttpTraceRingBuffer buffer = new HttpTraceRingBuffer(10);
+    buffer.add(trace("/a", 200, 0, 30));
+    buffer.add(trace("/b", 200, 1, 500));
+    buffer.add(trace("/c", 500, 2, 5000));
+    buffer.add(trace("/d", 200, 3, 100));
+
+    assertEquals(Arrays.asList("/c", "/b"), paths(buffer.findSlowest(ALL, 2)));
+    assertEquals(Arrays.asList("/b", "/d"),
+        paths(buffer.findSlowest(HttpTraceQuery.builder().status(200).build(), 2)));
+    assertTrue(buffer.findSlowest(ALL, 0).isEmpty());
+  }
+
+  private static HttpTrace trace(final String path, final int status, final long receivedSeconds,
+      final long timeTaken) {
+    Request request = new Request("GET", URI.create("http://localhost" + path),
+        Collections.emptyMap(), null);
+    return new HttpTrace(request, new Response(status, Collections.emptyMap()),
+        START.plusSeconds(receivedSeconds), null, null, timeTaken);
+  }
+
+  private static List<String> paths(final List<HttpTrace> traces) {
+    return traces.stream().map(trace -> trace.getRequest().getUri().getPath())
+        .collect(Collectors.toList());
+  }
+}
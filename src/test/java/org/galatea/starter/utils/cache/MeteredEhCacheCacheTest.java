@@ -0,0 +1,55 @@
+package org.galatea.starter.utils.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+
+public class MeteredEhCacheCacheTest {
+
+  private CacheManager ehcacheManager;
+
+  private MeterRegistry meterRegistry;
+
+  private MeteredEhCacheCacheManager cacheManager;
+
+  @Before
+  public void setup() {
+    ehcacheManager = CacheManager.newInstance(new Configuration().name("meteredCacheTest")
+        .cache(new CacheConfiguration("test", 100)));
+    meterRegistry = new SimpleMeterRegistry();
+    cacheManager = new MeteredEhCacheCacheManager(ehcacheManager, meterRegistry, "test");
+    cacheManager.afterPropertiesSet();
+  }
+
+  @After
+  public void tearDown() {
+    ehcacheManager.shutdown();
+  }
+
+  @Test
+  public void testCachesAreMetered() {
+    assertTrue(cacheManager.getCache("test") instanceof MeteredEhCacheCache);
+  }
+
+  @Test
+  public void testLoadsAreTimed() {
+    Cache cache = cacheManager.getCache("test");
+
+    assertEquals("loaded", cache.get("key", () -> "loaded"));
+    assertEquals("loaded", cache.get("key", () -> "loaded again"));
+
+    // Only the first get had to load, but both are timed as synchronized gets
+    assertEquals(1, meterRegistry.get("cache.load").tag("cache", "test")
+        .tag("cacheManager", "test").timer().count());
+    assertEquals(2, meterRegistry.get("cache.sync.get").tag("cache", "test").timer().count());
+  }
+}
@@ -4,6 +4,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -100,6 +102,23 @@ public class CsvSerializerTest {
     assertEquals(expected, actual);
   }
 
+  @Test
+  public void serializeToCsv_stream() throws Exception {
+    BasicClass row1 = new BasicClass("foo", "bar");
+    BasicClass row2 = new BasicClass("baz", null);
+
+    String expected
+        = "field1,field2\n"
+        + "foo,bar\n"
+        + "baz,\n";
+    // Write twice to check the cached writer starts each document with a fresh header
+    for (int i = 0; i < 2; i++) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      CsvSerializer.serializeToCsv(Arrays.asList(row1, row2), BasicClass.class, out);
+      assertEquals(expected, out.toString(StandardCharsets.UTF_8.name()));
+    }
+  }
+
   @AllArgsConstructor
   @NoArgsConstructor
   @Getter
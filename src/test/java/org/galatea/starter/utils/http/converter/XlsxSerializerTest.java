@@ -6,6 +6,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -160,6 +161,33 @@ public class XlsxSerializerTest {
     assertTrue(XlsxComparator.equals(expected, actual));
   }
 
+  @Test
+  public void serializeToXlsx_streamMoreRowsThanWindow() throws Exception {
+    // More rows than the streaming row window, so some rows are flushed out of memory mid-write
+    List<BasicClass> rows = new ArrayList<>();
+    for (int i = 0; i < 250; i++) {
+      rows.add(new BasicClass("foo" + i, "bar" + i));
+    }
+
+    byte[] expected;
+    try (Workbook wbExpected = new XSSFWorkbook()) {
+      Sheet sheet = wbExpected.createSheet();
+      Row row = sheet.createRow(0);
+      row.createCell(0).setCellValue("field1");
+      row.createCell(1).setCellValue("field2");
+      for (int i = 0; i < rows.size(); i++) {
+        row = sheet.createRow(i + 1);
+        row.createCell(0).setCellValue("foo" + i);
+        row.createCell(1).setCellValue("bar" + i);
+      }
+
+      expected = writeSpreadsheetToBytes(wbExpected);
+    }
+    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    XlsxSerializer.serializeToXlsx(rows, BasicClass.class, actual);
+    assertTrue(XlsxComparator.equals(expected, actual.toByteArray()));
+  }
+
   private static byte[] writeSpreadsheetToBytes(final Workbook wb) throws IOException {
     try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
       wb.write(baos);
@@ -0,0 +1,44 @@
+package org.galatea.starter.utils.jms;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class AdaptiveConcurrencyPolicyTest {
+
+  private final AdaptiveConcurrencyPolicy policy = AdaptiveConcurrencyPolicy.builder()
+      .maxConsumers(10).backlogPerConsumer(50).latencyLimitMillis(500).poolSaturationLimit(0.9)
+      .intervalMillis(1000).depthProbeLimit(1000).build();
+
+  @Test
+  public void testAddsConsumerWhenBehind() {
+    assertEquals(5, policy.nextMaxConsumers(4, 1, 201, 20, 0.5));
+  }
+
+  @Test
+  public void testKeepsConsumersWhenKeepingUp() {
+    assertEquals(4, policy.nextMaxConsumers(4, 1, 200, 20, 0.5));
+  }
+
+  @Test
+  public void testRemovesConsumerWhenQueueIsEmpty() {
+    assertEquals(3, policy.nextMaxConsumers(4, 1, 0, 20, 0.5));
+  }
+
+  @Test
+  public void testHalvesConsumersWhenPoolIsSaturated() {
+    assertEquals(4, policy.nextMaxConsumers(8, 1, 1000, 20, 0.9));
+  }
+
+  @Test
+  public void testHalvesConsumersWhenProcessingIsSlow() {
+    assertEquals(4, policy.nextMaxConsumers(8, 1, 1000, 501, 0.5));
+  }
+
+  @Test
+  public void testStaysWithinLimits() {
+    assertEquals(10, policy.nextMaxConsumers(10, 1, 1000, 20, 0.5));
+    assertEquals(2, policy.nextMaxConsumers(2, 2, 0, 20, 0.5));
+    assertEquals(3, policy.nextMaxConsumers(4, 3, 1000, 20, 1));
+  }
+}
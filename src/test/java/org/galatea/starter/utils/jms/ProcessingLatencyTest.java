@@ -0,0 +1,31 @@
+package org.galatea.starter.utils.jms;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class ProcessingLatencyTest {
+
+  private final ProcessingLatency latency = new ProcessingLatency();
+
+  @Test
+  public void testLatencyIsPerUnit() {
+    // A large batch that took a second is still only a millisecond per agreement
+    latency.record(TimeUnit.SECONDS.toNanos(1), 1000);
+    assertEquals(1, latency.getAsDouble(), 0.001);
+  }
+
+  @Test
+  public void testLatencyIsMovingAverage() {
+    latency.record(TimeUnit.MILLISECONDS.toNanos(10), 1);
+    latency.record(TimeUnit.MILLISECONDS.toNanos(20), 1);
+    assertEquals(12, latency.getAsDouble(), 0.001);
+  }
+
+  @Test
+  public void testEmptyWorkIsIgnored() {
+    latency.record(TimeUnit.MILLISECONDS.toNanos(10), 0);
+    assertEquals(0, latency.getAsDouble(), 0);
+  }
+}
@@ -0,0 +1,86 @@
+package org.galatea.starter.utils.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+public class EndpointLatencyInterceptorTest {
+
+  private MeterRegistry meterRegistry;
+
+  private EndpointLatencyInterceptor interceptor;
+
+  private HandlerMethod handler;
+
+  @Before
+  public void setup() throws Exception {
+    meterRegistry = new SimpleMeterRegistry();
+    interceptor = new EndpointLatencyInterceptor(meterRegistry, false);
+    handler = new HandlerMethod(new TestController(), TestController.class.getMethod("get"));
+  }
+
+  @Test
+  public void testRecordsLatencyByEndpointMediaTypeAndStatus() {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    response.setContentType("application/json;charset=UTF-8");
+    response.setStatus(404);
+
+    interceptor.preHandle(request, response, handler);
+    interceptor.afterCompletion(request, response, handler, null);
+
+    Timer timer = meterRegistry.find(EndpointLatencyInterceptor.METRIC_NAME)
+        .tag("controller", "TestController").tag("method", "get")
+        .tag("mediaType", "application/json").tag("status", "404").timer();
+    assertNotNull(timer);
+    assertEquals(1, timer.count());
+    assertEquals(3, timer.takeSnapshot().percentileValues().length);
+  }
+
+  @Test
+  public void testTimesAsyncRequestFromItsFirstDispatch() throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    interceptor.preHandle(request, response, handler);
+    interceptor.afterConcurrentHandlingStarted(request, response, handler);
+    Thread.sleep(20);
+    // The async dispatch goes through the interceptor again
+    interceptor.preHandle(request, response, handler);
+    interceptor.afterCompletion(request, response, handler, null);
+
+    Timer timer = meterRegistry.find(EndpointLatencyInterceptor.METRIC_NAME)
+        .tag("mediaType", "none").tag("status", "200").timer();
+    assertEquals(1, timer.count());
+    assertTrue(timer.totalTime(TimeUnit.MILLISECONDS) >= 20);
+  }
+
+  @Test
+  public void testIgnoresOtherHandlers() {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    interceptor.preHandle(request, response, new Object());
+    interceptor.afterCompletion(request, response, new Object(), null);
+
+    assertNull(meterRegistry.find(EndpointLatencyInterceptor.METRIC_NAME).timer());
+  }
+
+  public static class TestController {
+
+    public String get() {
+      return "";
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package org.galatea.starter.utils.rest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class TeeResponseWrapperTest {
+
+  @Test
+  public void testBodyPassesStraightThrough() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    TeeResponseWrapper wrapper = new TeeResponseWrapper(response, 100, r -> { });
+
+    wrapper.getOutputStream().write("first chunk".getBytes(StandardCharsets.UTF_8));
+
+    // Nothing is held back, even before the request completes
+    assertEquals("first chunk", response.getContentAsString());
+  }
+
+  @Test
+  public void testCapturesOnlyTheStartOfTheBody() throws Exception {
+    TeeResponseWrapper wrapper = new TeeResponseWrapper(new MockHttpServletResponse(), 4, r -> { });
+
+    wrapper.getOutputStream().write("ab".getBytes(StandardCharsets.UTF_8));
+    wrapper.getOutputStream().write('c');
+    wrapper.getOutputStream().write("defgh".getBytes(StandardCharsets.UTF_8));
+
+    assertArrayEquals("abcd".getBytes(StandardCharsets.UTF_8), wrapper.getCapturedBody());
+  }
+
+  @Test
+  public void testAddsHeadersBeforeFirstWrite() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    AtomicInteger calls = new AtomicInteger();
+    TeeResponseWrapper wrapper = new TeeResponseWrapper(response, 0, r -> {
+      calls.incrementAndGet();
+      // The body mustn't have started yet
+      assertEquals(0, response.getContentAsByteArray().length);
+      r.addHeader("requestElapsedTimeMillis", "5");
+    });
+
+    wrapper.getWriter().write("body");
+    wrapper.finish();
+    wrapper.finish();
+
+    assertEquals("body", response.getContentAsString());
+    assertEquals("5", response.getHeader("requestElapsedTimeMillis"));
+    assertEquals(1, calls.get());
+  }
+
+  @Test
+  public void testWriteWaitsForHeadersBeingAddedOnAnotherThread() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    CountDownLatch adding = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    TeeResponseWrapper wrapper = new TeeResponseWrapper(response, 0, r -> {
+      adding.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      r.addHeader("internalQueryId", "1");
+    });
+
+    Thread finisher = new Thread(wrapper::finish);
+    finisher.start();
+    assertTrue(adding.await(5, TimeUnit.SECONDS));
+
+    Thread writer = new Thread(() -> {
+      try {
+        wrapper.getOutputStream().write("body".getBytes(StandardCharsets.UTF_8));
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    writer.start();
+
+    // The write has to wait until the headers are in
+    writer.join(200);
+    assertTrue(writer.isAlive());
+    assertEquals(0, response.getContentAsByteArray().length);
+
+    release.countDown();
+    finisher.join(5000);
+    writer.join(5000);
+
+    assertEquals("1", response.getHeader("internalQueryId"));
+    assertEquals("body", response.getContentAsString());
+  }
+
+  @Test
+  public void testAddsHeadersToEmptyResponseOnFinish() {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    TeeResponseWrapper wrapper =
+        new TeeResponseWrapper(response, 0, r -> r.addHeader("internalQueryId", "1"));
+
+    assertNull(response.getHeader("internalQueryId"));
+    wrapper.finish();
+
+    assertEquals("1", response.getHeader("internalQueryId"));
+  }
+}
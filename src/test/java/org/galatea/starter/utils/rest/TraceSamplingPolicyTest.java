@@ -0,0 +1,56 @@
+package org.galatea.starter.utils.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class TraceSamplingPolicyTest {
+
+  @Test
+  public void testRecordsAtPathRate() {
+    TraceSamplingPolicy policy = new TraceSamplingPolicy(0,
+        TraceSamplingPolicy.parsePathRates("/settlementEngine=1, /settlementEngine/missions=0"),
+        false);
+
+    assertTrue(policy.shouldRecord("/settlementEngine/mission/1", 200));
+    assertFalse(policy.shouldRecord("/settlementEngine/missions/export", 200));
+    assertFalse(policy.shouldRecord("/iex/symbols", 200));
+  }
+
+  @Test
+  public void testAlwaysRecordsErrors() {
+    TraceSamplingPolicy policy = new TraceSamplingPolicy(0, Collections.emptyMap(), false);
+
+    assertTrue(policy.shouldRecord("/settlementEngine/mission/1", 404));
+    assertTrue(policy.shouldRecord("/settlementEngine", 500));
+  }
+
+  @Test
+  public void testErrorsOnly() {
+    TraceSamplingPolicy policy = new TraceSamplingPolicy(1, Collections.emptyMap(), true);
+
+    assertFalse(policy.shouldRecord("/settlementEngine", 200));
+    assertTrue(policy.shouldRecord("/settlementEngine", 400));
+  }
+
+  @Test
+  public void testParsePathRates() {
+    Map<String, Double> expected = new LinkedHashMap<>();
+    expected.put("/iex", 0.1);
+    expected.put("/settlementEngine/missions/export", 0d);
+
+    assertEquals(expected,
+        TraceSamplingPolicy.parsePathRates("/iex=0.1,/settlementEngine/missions/export=0"));
+    assertTrue(TraceSamplingPolicy.parsePathRates("").isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParsePathRatesWithoutRate() {
+    TraceSamplingPolicy.parsePathRates("/iex");
+  }
+}